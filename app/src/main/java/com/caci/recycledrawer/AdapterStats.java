@@ -0,0 +1,209 @@
+package com.caci.recycledrawer;
+
+import com.caci.recycledrawer.data.DrawerRows;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histograms for LocationAdapter, to tell whether jank in the drawer comes from
+ * inflating rows or from binding them:
+ *   - Create: onCreateViewHolder, per view type.  City rows share the LOCATION_ITEM view
+ *   - Bind: onBindViewHolder, per row type, so binding a city (CITY_ITEM) is kept apart from
+ *     binding a state (LOCATION_ITEM)
+ *   - Holders created, and holders recycled into the pool for reuse, per view type
+ * Each histogram has fixed buckets of doubling width: bucket 0 counts times under 1µs, and
+ * bucket b counts times from 2^(b-1) up to 2^b µs, with the last bucket counting everything
+ * slower.  Recording is an atomic increment with no locks or allocation.  Percentiles are read
+ * as the upper bound of the bucket they fall in, so they're accurate to within a factor of 2.
+ * The adapter only times anything when it has an AdapterStats, see LocationAdapter.setStats.
+ */
+public class AdapterStats {
+
+    /**
+     * Operations timed
+     */
+    public static final int CREATE = 0;
+    public static final int BIND = 1;
+    private static final int OPERATIONS = 2;
+
+    /**
+     * Slots for the DrawerRows view type constants, which start at 1
+     */
+    private static final int TYPES = DrawerRows.CITY_ITEM + 1;
+
+    /**
+     * Buckets per histogram, the last one starts at about 1s
+     */
+    private static final int BUCKETS = 22;
+
+    /**
+     * Every histogram's bucket counts, indexed by operation, then type, then bucket
+     */
+    private final AtomicLongArray mBuckets = new AtomicLongArray(OPERATIONS * TYPES * BUCKETS);
+
+    /**
+     * Holders created and recycled, indexed by view type
+     */
+    private final AtomicLongArray mCreated = new AtomicLongArray(TYPES);
+    private final AtomicLongArray mRecycled = new AtomicLongArray(TYPES);
+
+    /**
+     * Record creating a view holder
+     * @param viewType - view type created
+     * @param nanos - time it took
+     */
+    public void recordCreate(int viewType, long nanos){
+        mCreated.incrementAndGet(viewType);
+        mBuckets.incrementAndGet(index(CREATE, viewType, bucket(nanos)));
+    }
+
+    /**
+     * Record binding a row
+     * @param rowType - DrawerRows type of the row bound
+     * @param nanos - time it took
+     */
+    public void recordBind(int rowType, long nanos){
+        mBuckets.incrementAndGet(index(BIND, rowType, bucket(nanos)));
+    }
+
+    /**
+     * Record a view holder going back into the pool
+     * @param viewType - view type recycled
+     */
+    public void recordRecycle(int viewType){
+        mRecycled.incrementAndGet(viewType);
+    }
+
+    /**
+     * Get how many times an operation was recorded for a type
+     * @param operation - CREATE or BIND
+     * @param type - view type for CREATE, row type for BIND
+     * @return count
+     */
+    public long getCount(int operation, int type){
+        long count = 0;
+        for(int b=0; b<BUCKETS; b++){
+            count += mBuckets.get(index(operation, type, b));
+        }
+        return count;
+    }
+
+    /**
+     * Get a percentile of an operation's latency
+     * @param operation - CREATE or BIND
+     * @param type - view type for CREATE, row type for BIND
+     * @param percentile - percentile from 0 to 100
+     * @return upper bound of the bucket the percentile falls in, in µs, or 0 if nothing was
+     * recorded.  Long.MAX_VALUE if it falls in the last bucket
+     */
+    public long getPercentileMicros(int operation, int type, double percentile){
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for(int b=0; b<BUCKETS; b++){
+            counts[b] = mBuckets.get(index(operation, type, b));
+            total += counts[b];
+        }
+        if(total == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for(int b=0; b<BUCKETS - 1; b++){
+            seen += counts[b];
+            if(seen >= rank){
+                return 1L << b;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Get the number of view holders created for a view type
+     * @param viewType - view type
+     * @return count
+     */
+    public long getCreatedCount(int viewType){
+        return mCreated.get(viewType);
+    }
+
+    /**
+     * Get the number of view holders recycled into the pool for a view type
+     * @param viewType - view type
+     * @return count
+     */
+    public long getRecycledCount(int viewType){
+        return mRecycled.get(viewType);
+    }
+
+    /**
+     * Forget everything recorded
+     */
+    public void reset(){
+        for(int i=0; i<mBuckets.length(); i++){
+            mBuckets.set(i, 0);
+        }
+        for(int i=0; i<TYPES; i++){
+            mCreated.set(i, 0);
+            mRecycled.set(i, 0);
+        }
+    }
+
+    /**
+     * Describe every type that has recorded anything: creates against recycles, and the 50th,
+     * 90th and 99th percentile create and bind times
+     * @return one line per type
+     */
+    public String summary(){
+        StringBuilder summary = new StringBuilder();
+        for(int type=1; type<TYPES; type++){
+            long creates = getCount(CREATE, type);
+            long binds = getCount(BIND, type);
+            if(creates == 0 && binds == 0){
+                continue;
+            }
+            summary.append(String.format(Locale.US,
+                    "%s: created %d, recycled %d, create p50/90/99 %s/%s/%sµs (%d), "
+                            + "bind p50/90/99 %s/%s/%sµs (%d)\n",
+                    typeName(type), getCreatedCount(type), getRecycledCount(type),
+                    percentile(CREATE, type, 50), percentile(CREATE, type, 90),
+                    percentile(CREATE, type, 99), creates,
+                    percentile(BIND, type, 50), percentile(BIND, type, 90),
+                    percentile(BIND, type, 99), binds));
+        }
+        return summary.toString();
+    }
+
+    private String percentile(int operation, int type, double percentile){
+        long micros = getPercentileMicros(operation, type, percentile);
+        if(micros == 0){
+            return "-";
+        }
+        return micros == Long.MAX_VALUE ? ">" + (1L << (BUCKETS - 2)) : "<" + micros;
+    }
+
+    private static String typeName(int type){
+        switch(type){
+            case DrawerRows.STATE_HEADER:
+                return "STATE_HEADER";
+            case DrawerRows.CITY_HEADER:
+                return "CITY_HEADER";
+            case DrawerRows.LOCATION_ITEM:
+                return "LOCATION_ITEM";
+            default:
+                return "CITY_ITEM";
+        }
+    }
+
+    /**
+     * Bucket for a time: 0 under 1µs, then one per power of 2 µs
+     */
+    private static int bucket(long nanos){
+        long micros = nanos / 1000;
+        return Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+    }
+
+    private static int index(int operation, int type, int bucket){
+        return (operation * TYPES + type) * BUCKETS + bucket;
+    }
+}
@@ -0,0 +1,71 @@
+package com.caci.recycledrawer;
+
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+/**
+ * Debug overlay showing an AdapterStats summary across the top of a FrameLayout, refreshed twice
+ * a second while it's started.  It doesn't take touches, so the app underneath works as usual
+ */
+public class AdapterStatsOverlay {
+
+    /**
+     * Time between refreshes
+     */
+    private static final long REFRESH_MILLIS = 500;
+
+    private final AdapterStats mStats;
+    private final TextView mText;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Shows the summary again and schedules the next refresh
+     */
+    private final Runnable mRefresh = new Runnable() {
+        @Override
+        public void run() {
+            mText.setText(mStats.summary());
+            mHandler.postDelayed(this, REFRESH_MILLIS);
+        }
+    };
+
+    /**
+     * Constructor
+     * @param parent - layout to show the overlay over, such as the activity's content
+     * @param stats - stats to show
+     */
+    public AdapterStatsOverlay(FrameLayout parent, AdapterStats stats){
+        mStats = stats;
+        mText = new TextView(parent.getContext());
+        mText.setTextSize(10);
+        mText.setTypeface(Typeface.MONOSPACE);
+        mText.setTextColor(Color.WHITE);
+        mText.setBackgroundColor(0xAA000000);
+        mText.setPadding(8, 8, 8, 8);
+        mText.setClickable(false);
+        mText.setFocusable(false);
+        parent.addView(mText, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.TOP));
+    }
+
+    /**
+     * Start refreshing.  Call when the activity is resumed
+     */
+    public void start(){
+        mHandler.removeCallbacks(mRefresh);
+        mRefresh.run();
+    }
+
+    /**
+     * Stop refreshing.  Call when the activity is paused
+     */
+    public void stop(){
+        mHandler.removeCallbacks(mRefresh);
+    }
+}
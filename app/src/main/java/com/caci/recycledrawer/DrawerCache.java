@@ -0,0 +1,139 @@
+package com.caci.recycledrawer;
+
+import android.os.Parcelable;
+import android.util.LruCache;
+
+import com.caci.recycledrawer.data.DrawerRows;
+
+/**
+ * Remembers what the drawer showed for each level so moving between them costs nothing after the
+ * first visit:
+ *   - Cities: an LRU cache, by state name, of the prepared city rows and the scroll position the
+ *     list was left at.  Bounded by a byte budget
+ *   - States: the scroll position of the state list
+ */
+public class DrawerCache {
+
+    /**
+     * Estimated size of a saved LinearLayoutManager scroll state
+     */
+    private static final int SCROLL_STATE_BYTES = 32;
+
+    /**
+     * City lists by state name, sized in bytes
+     */
+    private LruCache<String, Entry> mCities;
+
+    /**
+     * Scroll position of the state list
+     */
+    private Parcelable mStatesScrollState;
+
+    /**
+     * Constructor
+     * @param maxBytes - most bytes the cached city lists may use
+     */
+    public DrawerCache(int maxBytes){
+        mCities = new LruCache<String, Entry>(maxBytes) {
+            @Override
+            protected int sizeOf(String state, Entry entry) {
+                return entry.getRows().estimateBytes() + SCROLL_STATE_BYTES;
+            }
+        };
+    }
+
+    /**
+     * Get the cached cities for a state
+     * @param state - state name
+     * @return the cached entry, or null if the state isn't cached
+     */
+    public Entry getCities(String state){
+        return mCities.get(state);
+    }
+
+    /**
+     * Cache the cities for a state
+     * @param state - state name
+     * @param rows - the state's city rows
+     * @return the new entry
+     */
+    public Entry putCities(String state, DrawerRows rows){
+        Entry entry = new Entry(rows);
+        mCities.put(state, entry);
+        return entry;
+    }
+
+    /**
+     * Drop every cached city list, for when the data changes
+     */
+    public void clear(){
+        mCities.evictAll();
+        mStatesScrollState = null;
+    }
+
+    /**
+     * Cache statistics
+     * @return
+     */
+    public int getHitCount(){
+        return mCities.hitCount();
+    }
+
+    public int getMissCount(){
+        return mCities.missCount();
+    }
+
+    public int getSizeBytes(){
+        return mCities.size();
+    }
+
+    public int getMaxBytes(){
+        return mCities.maxSize();
+    }
+
+    /**
+     * Getters and setters
+     * @return
+     */
+    public Parcelable getStatesScrollState() {
+        return mStatesScrollState;
+    }
+
+    public void setStatesScrollState(Parcelable statesScrollState) {
+        this.mStatesScrollState = statesScrollState;
+    }
+
+    /**
+     * A state's prepared city rows and where its list was scrolled to
+     * ----------------------------------------------------------------
+     */
+    public static class Entry {
+
+        private final DrawerRows mRows;
+
+        /**
+         * Scroll position of the city list, null until the list is left
+         */
+        private Parcelable mScrollState;
+
+        Entry(DrawerRows rows){
+            mRows = rows;
+        }
+
+        /**
+         * Getters and setters
+         * @return
+         */
+        public DrawerRows getRows() {
+            return mRows;
+        }
+
+        public Parcelable getScrollState() {
+            return mScrollState;
+        }
+
+        public void setScrollState(Parcelable scrollState) {
+            this.mScrollState = scrollState;
+        }
+    }
+}
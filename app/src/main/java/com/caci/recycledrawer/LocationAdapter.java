@@ -1,54 +1,176 @@
 package com.caci.recycledrawer;
 
 import android.content.Context;
-import android.util.Log;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.Button;
-import android.widget.TextView;
 
-import com.caci.recycledrawer.data.CityHeaderData;
-import com.caci.recycledrawer.data.StateHeaderData;
+import com.caci.recycledrawer.data.CityPage;
+import com.caci.recycledrawer.data.DrawerRows;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.Executor;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 /**
- * RecyclerView adapter for the list of Locations
+ * RecyclerView adapter for the whole drawer: the list of states, a state's cities and search
+ * results.
  * Handles 3 types of possible rows (ViewHolders)
  *   - State Header: A header object for when the list is a list of states
- *   - City Header: A header object for when the list is a list of cities
- *   - Location Item: just a string object that represents either a state or city name
+ *   - City Header: A header object with back button for when the list is a list of cities
+ *   - Location Item: either a state or city name
+ * State and city names share a view type, so switching between the two lists rebinds the same
+ * ViewHolders instead of inflating new ones.  Rows are changed with submitRows: a new list of
+ * the same kind is diffed with DiffUtil on a background thread and only the changed rows are
+ * updated.  A city list's order is changed with setCityOrder, which rebinds the rows in place
+ * without a diff.  Items have stable ids, so holders follow their state or city across any
+ * change.  A paged city list's rows show a placeholder until their page has loaded, and are
+ * rebound when it arrives.  With an AdapterStats set, every create and bind is timed into it.
  */
-public class LocationAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+public class LocationAdapter extends RecyclerView.Adapter<RowViewHolder> {
 
     /**
-     * List of location names
+     * Lists bigger than this are swapped instead of diffed, the diff would take longer than
+     * rebinding the rows on screen
      */
-    private List<Object> mLocations = new ArrayList<>();
+    private static final int MAX_DIFF_ROWS = 5000;
 
     /**
-     * Click listener
+     * Rows to show
      */
-    private RecyclerViewClickListener mListener;
+    private DrawerRows mRows;
 
     /**
-     * Constants to identify the type of view to be inflated
+     * Click listener for a state row
      */
-    private static final int STATE_HEADER = 1;
-    private static final int LOCATION_ITEM = 3;
+    private RecyclerViewClickListener mStateListener;
+
+    /**
+     * Click listener for a city row
+     */
+    private RecyclerViewClickListener mCityListener;
+
+    /**
+     * Click listener for the back button in the city header
+     */
+    private View.OnClickListener mCityBackListener;
+
+    /**
+     * Supplies views inflated ahead of time, null if holders aren't warmed
+     */
+    private ViewHolderWarmer mWarmer;
+
+    /**
+     * Receives create and bind times, null to time nothing
+     */
+    private AdapterStats mStats;
+
+    /**
+     * Executor the diffs are calculated on
+     */
+    private Executor mDiffExecutor;
+
+    /**
+     * Handler for applying finished diffs on the main thread
+     */
+    private Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Incremented for every submitRows call, so a diff that finishes after a newer submit is
+     * dropped.  Only used on the main thread
+     */
+    private int mSubmitCount;
+
+    /**
+     * Passes row clicks to the state or city listener, depending on the row that was clicked
+     */
+    private RecyclerViewClickListener mRowListener = new RecyclerViewClickListener() {
+        @Override
+        public void onClick(int position) {
+            if(position == RecyclerView.NO_POSITION){
+                return;
+            }
+            int viewType = mRows.getViewType(position);
+            if(viewType == DrawerRows.LOCATION_ITEM && mStateListener != null){
+                mStateListener.onClick(position);
+            } else if(viewType == DrawerRows.CITY_ITEM && mCityListener != null){
+                mCityListener.onClick(position);
+            }
+        }
+    };
 
     /**
      * Constructor
-     * @param locations - ArrayList of location names
+     * @param rows - rows to show first
+     * @param stateListener - listener for clicking a state name
+     * @param cityListener - listener for clicking a city name
+     * @param cityBackListener - listener for clicking the back button in the city header
+     * @param diffExecutor - background executor to calculate diffs on
+     */
+    public LocationAdapter(DrawerRows rows, RecyclerViewClickListener stateListener,
+                           RecyclerViewClickListener cityListener,
+                           View.OnClickListener cityBackListener, Executor diffExecutor){
+        mRows = rows;
+        mStateListener = stateListener;
+        mCityListener = cityListener;
+        mCityBackListener = cityBackListener;
+        mDiffExecutor = diffExecutor;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Show a new list of rows.  Switching between states, cities and search results swaps the
+     * rows straight away, since few rows are in both lists, and so do very long lists.
+     * Otherwise the new rows are diffed against the current ones in the background and only the
+     * rows that changed are updated
+     * @param rows - rows to show
      */
-    public LocationAdapter(List<Object> locations, RecyclerViewClickListener listener){
-        mLocations = locations;
-        mListener = listener;
+    public void submitRows(final DrawerRows rows){
+        final DrawerRows oldRows = mRows;
+        final int submit = ++mSubmitCount;
+        if(oldRows.getKind() != rows.getKind() || oldRows.size() == 0 || rows.size() == 0
+                || oldRows.size() > MAX_DIFF_ROWS || rows.size() > MAX_DIFF_ROWS){
+            // Every holder goes back to the pool and is rebound for the new rows
+            mRows = rows;
+            notifyDataSetChanged();
+            return;
+        }
+
+        mDiffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new RowDiff(oldRows, rows));
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(submit != mSubmitCount){
+                            // Rows were submitted again while this diff was running
+                            return;
+                        }
+                        mRows = rows;
+                        result.dispatchUpdatesTo(LocationAdapter.this);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Show the cities of the current city list in another order.  Every row stays, only the
+     * cities bound to them change, so the city rows are rebound without diffing
+     * @param cityRows - store rows of the state's cities in the new order, or null for
+     *                 alphabetical order
+     */
+    public void setCityOrder(int[] cityRows){
+        if(!mRows.isCityList() || mRows.getCityOrder() == cityRows){
+            return;
+        }
+        mRows.setCityOrder(cityRows);
+        notifyItemRangeChanged(1, mRows.size() - 1);
     }
 
     /**
@@ -59,73 +181,136 @@ public class LocationAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
      */
     @NonNull
     @Override
-    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        Context context = parent.getContext();
-        RecyclerView.ViewHolder holder;
-        if(viewType == LOCATION_ITEM) {
-            View v = LayoutInflater.from(context).inflate(R.layout.location_row_layout, parent, false);
-            holder = new LocationViewHolder(v);
+    public RowViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        long start = mStats != null ? System.nanoTime() : 0;
+
+        // Use a view inflated ahead of time by the warmer if there is one
+        View v = mWarmer != null ? mWarmer.takeWarmView(viewType) : null;
+        if(v == null){
+            Context context = parent.getContext();
+            v = LayoutInflater.from(context).inflate(getLayout(viewType), parent, false);
+        }
+
+        RowViewHolder holder;
+        if(viewType == DrawerRows.LOCATION_ITEM) {
+            holder = new RowViewHolder(v, R.id.location_name, mRowListener);
+        } else if(viewType == DrawerRows.CITY_HEADER){
+            v.findViewById(R.id.city_header_back_button).setOnClickListener(mCityBackListener);
+            holder = new RowViewHolder(v, R.id.city_header_name, null);
         } else{
-            View v = LayoutInflater.from(context).inflate(R.layout.state_header_layout, parent, false);
-            holder = new StateHeaderViewHolder(v);
+            holder = new RowViewHolder(v, R.id.state_header_name, null);
+        }
+
+        if(mStats != null){
+            mStats.recordCreate(viewType, System.nanoTime() - start);
         }
         return holder;
     }
 
     /**
-     * Bind view holder - populate the row data from the given position based on the type
-     * of ViewHolder that it receives
+     * Get the layout to inflate for a view type
+     * @param viewType - view type from getItemViewType
+     * @return layout resource
+     */
+    public static int getLayout(int viewType){
+        if(viewType == DrawerRows.LOCATION_ITEM){
+            return R.layout.location_row_layout;
+        } else if(viewType == DrawerRows.CITY_HEADER){
+            return R.layout.city_header_layout;
+        }
+        return R.layout.state_header_layout;
+    }
+
+    /**
+     * Bind view holder - populate the row data from the given position based on the row's type
      * @param holder
      * @param position
      */
     @Override
-    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
-        if(holder instanceof LocationViewHolder) {
-            bindLocation(holder, position);
-        } else if (holder instanceof StateHeaderViewHolder){
-            bindStateHeader(holder, position);
+    public void onBindViewHolder(@NonNull RowViewHolder holder, int position) {
+        if(mStats == null){
+            bindRow(holder, position);
+            return;
         }
+        long start = System.nanoTime();
+        bindRow(holder, position);
+        mStats.recordBind(mRows.getViewType(position), System.nanoTime() - start);
     }
 
     /**
-     * Bind a Location row object
-     * @param holder a LocationViewHolder
-     * @param position position of clicked element
+     * Show a row's name in its holder
+     * @param holder
+     * @param position
+     */
+    private void bindRow(RowViewHolder holder, int position){
+        switch(mRows.getViewType(position)){
+            case DrawerRows.LOCATION_ITEM:
+                holder.getName().setText(mRows.getStateName(position));
+                break;
+            case DrawerRows.CITY_ITEM:
+                if(mRows.getPagedCities() != null){
+                    bindPagedCity(holder, position);
+                    break;
+                }
+                // Bind straight from the store's name pool so no String is created per row
+                holder.bindName(mRows.getNamePool(), mRows.getNameOffset(position),
+                        mRows.getNameLength(position));
+                break;
+            case DrawerRows.STATE_HEADER:
+                holder.getName().setText(mRows.getStateHeader().getName());
+                break;
+            case DrawerRows.CITY_HEADER:
+                holder.getName().setText(mRows.getCityHeader().getName());
+                break;
+        }
+    }
+
+    /**
+     * Bind a paged city list's row from its page, or a placeholder if the page is still loading
+     * @param holder
+     * @param position
      */
-    private void bindLocation(RecyclerView.ViewHolder holder, int position){
-        if(holder instanceof LocationViewHolder){
-            LocationViewHolder viewHolder = (LocationViewHolder)holder;
-            String locString = (String)mLocations.get(position);
-            viewHolder.getName().setText(locString);
+    private void bindPagedCity(RowViewHolder holder, int position){
+        int index = mRows.getCityIndex(position);
+        CityPage page = mRows.getPagedCities().getPage(index);
+        if(page == null){
+            holder.getName().setText(R.string.city_placeholder);
+            return;
         }
+        holder.bindName(page.getNamePool(), page.getNameOffset(index), page.getNameLength(index));
     }
 
     /**
-     * Bind a State Header Object
-     * @param holder StateViewHolder object
-     * @param position should be 0
+     * Count holders going back into the pool, against the ones created
+     * @param holder
      */
-    private void bindStateHeader(RecyclerView.ViewHolder holder, int position){
-        if(holder instanceof StateHeaderViewHolder){
-            StateHeaderViewHolder viewHolder = (StateHeaderViewHolder)holder;
-            viewHolder.getName().setText("State Header set");
+    @Override
+    public void onViewRecycled(@NonNull RowViewHolder holder) {
+        if(mStats != null){
+            mStats.recordRecycle(holder.getItemViewType());
         }
     }
 
     /**
      * Called by default on every row when constructing the list.  This will tell the create
-     * method what type of ViewHolder to construct
+     * method what type of ViewHolder to construct.  City rows use the same view as state rows
      * @param position
      * @return
      */
     @Override
     public int getItemViewType(int position){
-        if(mLocations.get(position) instanceof StateHeaderData){
-            return STATE_HEADER;
-        } else if(mLocations.get(position) instanceof String){
-            return LOCATION_ITEM;
-        }
-        return -1;
+        int viewType = mRows.getViewType(position);
+        return viewType == DrawerRows.CITY_ITEM ? DrawerRows.LOCATION_ITEM : viewType;
+    }
+
+    /**
+     * Get a row's stable id, from the store's state and city ids
+     * @param position
+     * @return
+     */
+    @Override
+    public long getItemId(int position){
+        return mRows.getItemId(position);
     }
 
     /**
@@ -134,131 +319,111 @@ public class LocationAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
      */
     @Override
     public int getItemCount() {
-        return mLocations.size();
+        return mRows.size();
     }
 
     /**
      *  Remove all locations
      */
     public void clear(){
-        mLocations.clear();
+        mRows = DrawerRows.empty();
     }
 
     /**
      * Getters and setters
      */
-    public List<Object> getmLocations() {
-        return mLocations;
+    public DrawerRows getmRows() {
+        return mRows;
     }
 
-    public void setmLocations(List<Object> mLocations) {
-        this.mLocations = mLocations;
+    public void setmRows(DrawerRows mRows) {
+        this.mRows = mRows;
     }
 
-    public RecyclerViewClickListener getmListener() {
-        return mListener;
+    public RecyclerViewClickListener getmStateListener() {
+        return mStateListener;
     }
 
-    public void setmListener(RecyclerViewClickListener mListener) {
-        this.mListener = mListener;
+    public void setmStateListener(RecyclerViewClickListener mStateListener) {
+        this.mStateListener = mStateListener;
     }
 
+    public RecyclerViewClickListener getmCityListener() {
+        return mCityListener;
+    }
 
+    public void setmCityListener(RecyclerViewClickListener mCityListener) {
+        this.mCityListener = mCityListener;
+    }
 
-    /**
-     * View holder for an individual location item
-     * -------------------------------------------
-     */
-    public class LocationViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener{
-
-        /**
-         * Name of the Location
-         */
-        TextView name;
-
-        /**
-         * Required constructor
-         * @param itemView given view
-         */
-        public LocationViewHolder(@NonNull View itemView) {
-            super(itemView);
-            name = (TextView) itemView.findViewById(R.id.location_name);
-            itemView.setOnClickListener(this);
-        }
+    public ViewHolderWarmer getmWarmer() {
+        return mWarmer;
+    }
 
-        /**
-         * Click listener
-         * @param view - clicked view
-         */
-        @Override
-        public void onClick(View view) {
-            int adapterPosition = getAdapterPosition();
-            mListener.onClick(adapterPosition);
-        }
+    public void setmWarmer(ViewHolderWarmer mWarmer) {
+        this.mWarmer = mWarmer;
+    }
 
-        /**
-         * Getters and setters
-         * @return
-         */
-        public TextView getName() {
-            return name;
-        }
+    public AdapterStats getStats() {
+        return mStats;
+    }
 
-        public void setName(TextView name) {
-            this.name = name;
-        }
+    public void setStats(AdapterStats stats) {
+        this.mStats = stats;
     }
 
+    public View.OnClickListener getmCityBackListener() {
+        return mCityBackListener;
+    }
 
+    public void setmCityBackListener(View.OnClickListener mCityBackListener) {
+        this.mCityBackListener = mCityBackListener;
+    }
 
 
 
     /**
-     * View holder for a state header object.  Contains basic data about the state to be
-     * displayed at the top of the RecyclerView
-     * -----------------------------------------------------------------------------------
+     * Compares two lists of rows of the same kind for DiffUtil
+     * --------------------------------------------------------
      */
-    public class StateHeaderViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener{
-
-        /**
-         * Name of the state
-         */
-        TextView name;
-
-        /**
-         * Constructor
-         * @param itemView
-         */
-        public StateHeaderViewHolder(@NonNull View itemView) {
-            super(itemView);
-            name = (TextView) itemView.findViewById(R.id.state_header_name);
+    private static class RowDiff extends DiffUtil.Callback {
+
+        private final DrawerRows mOld;
+        private final DrawerRows mNew;
+
+        RowDiff(DrawerRows oldRows, DrawerRows newRows){
+            mOld = oldRows;
+            mNew = newRows;
         }
 
-        /**
-         * Click listener
-         * @param view - clicked view
-         */
         @Override
-        public void onClick(View view) {
-            int adapterPosition = getAdapterPosition();
-            mListener.onClick(adapterPosition);
+        public int getOldListSize() {
+            return mOld.size();
         }
 
-        /**
-         * Getters and setters
-         * @return
-         */
-        public TextView getName() {
-            return name;
+        @Override
+        public int getNewListSize() {
+            return mNew.size();
         }
 
-        public void setName(TextView name) {
-            this.name = name;
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            // Ids identify the state or city, and there's only one header of each type
+            return mOld.getItemId(oldPosition) == mNew.getItemId(newPosition);
         }
-    }
-
-
-
-
 
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            switch(mOld.getViewType(oldPosition)){
+                case DrawerRows.STATE_HEADER:
+                    return mOld.getStateHeader().getName().equals(mNew.getStateHeader().getName())
+                            && mOld.getStateHeader().getStateCount() == mNew.getStateHeader().getStateCount();
+                case DrawerRows.CITY_HEADER:
+                    return mOld.getCityHeader().getName().equals(mNew.getCityHeader().getName());
+                default:
+                    // Names are what identify the rows, so the same row shows the same name
+                    return true;
+            }
+        }
+    }
 }
@@ -0,0 +1,493 @@
+package com.caci.recycledrawer;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteException;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.caci.recycledrawer.data.DrawerRows;
+import com.caci.recycledrawer.data.Location;
+import com.caci.recycledrawer.data.LocationCollator;
+import com.caci.recycledrawer.data.LocationDatabase;
+import com.caci.recycledrawer.data.LocationAssets;
+import com.caci.recycledrawer.data.LocationIndex;
+import com.caci.recycledrawer.data.LocationLoader;
+import com.caci.recycledrawer.data.LocationSnapshot;
+import com.caci.recycledrawer.data.LocationStore;
+import com.caci.recycledrawer.data.PrefixIndex;
+import com.caci.recycledrawer.data.SpatialIndex;
+import com.caci.recycledrawer.data.TrigramIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the location data on a background executor and reports progress back on the main thread
+ * in four steps:
+ *   - States: the sorted state list, as soon as every state is known
+ *   - Model ready: the full LocationStore once every state's cities are grouped and sorted
+ *   - Search indexes: a PrefixIndex over every state and city name, and a TrigramIndex for
+ *     misspelled city names, read from the search keys the store folded
+ *   - Nearby index: a SpatialIndex over every city's coordinates
+ * The prebuilt LocationIndex is used when it's available.  In the locale it was compiled for,
+ * its mapped columns are the store as they are.  In any other locale, and without the index,
+ * the store is read from the LocationSnapshot saved by an earlier launch if it was built from
+ * the same json for the same locale.  Failing that a sorted copy of the index is made, or else
+ * the cities are read from the LocationDatabase if one was set, which imports the json the first
+ * time, or the json is parsed.  The store built is saved as the new snapshot.
+ * Every stage is traced and timed in StartupMetrics.  Any failure, whether an IOException or a
+ * runtime exception from malformed data, is reported through onLoadFailed.
+ */
+public class LocationLoadTask {
+
+    private static final String TAG = "LocationLoadTask";
+
+    /**
+     * Receives loading results on the main thread.  Nothing is delivered after cancel()
+     */
+    public interface Callback {
+        void onStatesLoaded(DrawerRows states);
+        void onModelReady(LocationStore store);
+        void onSearchIndexReady(PrefixIndex prefixIndex, TrigramIndex fuzzyIndex);
+        void onNearbyIndexReady(SpatialIndex index);
+        void onLoadFailed(IOException e);
+    }
+
+    /**
+     * Json the locations are parsed from when there's no index
+     */
+    private static final String JSON_ASSET = "cities.json";
+
+    /**
+     * Application context for the assets and files dir
+     */
+    private Context mContext;
+
+    /**
+     * Sorts state and city names for the user's locale
+     */
+    private LocationCollator mCollator;
+
+    /**
+     * Optional SQLite copy of the json, null to parse the json whenever there's no index
+     */
+    private LocationDatabase mDatabase;
+
+    /**
+     * Executor the loading runs on
+     */
+    private ExecutorService mExecutor;
+
+    /**
+     * Handler for posting results to the main thread
+     */
+    private Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Running load, if started
+     */
+    private Future<?> mFuture;
+
+    /**
+     * Set once the task is cancelled.  Checked by the loading thread between rows and stages, and
+     * by the main thread before delivering each result
+     */
+    private volatile boolean mCancelled;
+
+    /**
+     * Registry the stages are timed in
+     */
+    private final StartupMetrics mMetrics = StartupMetrics.getInstance();
+
+    /**
+     * Constructor
+     * @param context - context, only the application context is kept
+     * @param executor - background executor to load on
+     * @param collator - sorts the names
+     */
+    public LocationLoadTask(Context context, ExecutorService executor, LocationCollator collator){
+        mContext = context.getApplicationContext();
+        mExecutor = executor;
+        mCollator = collator;
+    }
+
+    /**
+     * Read the cities from a database instead of parsing the json when there's no index
+     * @param database - database to read from, null to always parse the json
+     */
+    public void setDatabase(LocationDatabase database){
+        mDatabase = database;
+    }
+
+    /**
+     * Start loading
+     * @param callback - receives the results on the main thread
+     */
+    public void start(final Callback callback){
+        mFuture = mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                StartupMetrics.Section section = mMetrics.begin("loadLocations");
+                try {
+                    load(callback);
+                } catch (IOException e) {
+                    publishFailure(callback, e);
+                } catch (CancellationException e) {
+                    // Cancelled mid-load, nobody is listening anymore
+                } catch (RuntimeException e) {
+                    // Malformed data, such as a bad number in the json or a truncated file.  The
+                    // future would swallow it and the activity would never hear of it
+                    publishFailure(callback, new IOException("Unable to load locations", e));
+                } finally {
+                    section.end();
+                }
+            }
+        });
+    }
+
+    /**
+     * Stop loading and drop any results that haven't been delivered yet.  Call when the
+     * activity is destroyed
+     */
+    public void cancel(){
+        mCancelled = true;
+        if(mFuture != null){
+            mFuture.cancel(true);
+        }
+    }
+
+    /**
+     * Load from the index if possible, otherwise from the json
+     * @param callback - receives the results
+     */
+    private void load(Callback callback) throws IOException {
+        LocationIndex index = null;
+        StartupMetrics.Section section = mMetrics.begin("openIndex");
+        try {
+            index = LocationAssets.openIndex(mContext);
+        } catch (IOException | RuntimeException e) {
+            // Missing or corrupt, load without it
+            Log.e(TAG, "Unable to open the location index", e);
+        } finally {
+            section.end();
+        }
+
+        if(index != null){
+            // The index is already grouped, sorted and folded, so for the locale it was compiled
+            // for the store is read straight from the mapped file
+            LocationStore store = index.getStore();
+            String locale = mCollator.getLocale().toString();
+            if(!index.getLocale().equals(locale)){
+                store = sortIndex(index, locale);
+            }
+            publishStates(callback, DrawerRows.forStates(store.getStateNames()));
+            publishModel(callback, store);
+
+            // Browsing works now, index the names for searching
+            checkCancelled();
+            publishSearchIndexes(callback, store, buildFuzzyIndex(store));
+            publishNearbyIndex(callback, store);
+        } else{
+            loadWithoutIndex(callback);
+        }
+    }
+
+    /**
+     * Get the index's store sorted for a locale it wasn't compiled for: the snapshot saved the
+     * first time, or else a sorted copy, saved as the snapshot for next time
+     * @param index - mapped index
+     * @param locale - locale to sort for
+     * @return the sorted store
+     */
+    private LocationStore sortIndex(LocationIndex index, String locale){
+        LocationSnapshot snapshot = new LocationSnapshot(
+                new File(mContext.getFilesDir(), LocationSnapshot.FILE_NAME));
+        LocationStore store = readSnapshot(snapshot, index.getChecksum(), locale);
+        if(store != null){
+            return store;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool();
+        StartupMetrics.Section section = mMetrics.begin("sortIndex");
+        try {
+            store = index.getStore().sortedCopy(pool, mCollator);
+        } finally {
+            section.end();
+            pool.shutdown();
+        }
+        checkCancelled();
+        writeSnapshot(snapshot, store, index.getChecksum(), locale);
+        return store;
+    }
+
+    /**
+     * Load from the snapshot if it's up to date, otherwise build the store from the database or
+     * the json and save it as the snapshot for next time
+     * @param callback - receives the results
+     */
+    private void loadWithoutIndex(Callback callback) throws IOException {
+        LocationSnapshot snapshot = new LocationSnapshot(
+                new File(mContext.getFilesDir(), LocationSnapshot.FILE_NAME));
+        // Reading the json to checksum it is far cheaper than parsing it
+        long checksum;
+        StartupMetrics.Section section = mMetrics.begin("checksumJson");
+        try {
+            checksum = LocationLoader.checksum(mContext.getAssets().open(JSON_ASSET));
+        } finally {
+            section.end();
+        }
+        String locale = mCollator.getLocale().toString();
+
+        LocationStore store = readSnapshot(snapshot, checksum, locale);
+        if(store != null){
+            publishStates(callback, DrawerRows.forStates(store.getStateNames()));
+            publishModel(callback, store);
+            checkCancelled();
+            publishSearchIndexes(callback, store, buildFuzzyIndex(store));
+            publishNearbyIndex(callback, store);
+            return;
+        }
+
+        store = mDatabase != null ? loadFromDatabase(callback) : null;
+        if(store == null){
+            store = generateLocations(callback);
+        }
+        checkCancelled();
+        writeSnapshot(snapshot, store, checksum, locale);
+    }
+
+    /**
+     * Read the snapshot.  Failing only costs this launch a full load
+     * @return the store, or null if there's no usable snapshot
+     */
+    private LocationStore readSnapshot(LocationSnapshot snapshot, long checksum, String locale){
+        StartupMetrics.Section section = mMetrics.begin("readSnapshot");
+        try {
+            return snapshot.read(checksum, locale);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to read the location snapshot", e);
+            return null;
+        } finally {
+            section.end();
+        }
+    }
+
+    /**
+     * Save a store as the snapshot.  Failing only costs the next launch a full load
+     */
+    private void writeSnapshot(LocationSnapshot snapshot, LocationStore store, long checksum,
+                               String locale){
+        StartupMetrics.Section section = mMetrics.begin("writeSnapshot");
+        try {
+            snapshot.write(store, checksum, locale);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Unable to write the location snapshot", e);
+        } finally {
+            section.end();
+        }
+    }
+
+    /**
+     * Read the cities from the database, importing the json into it first if it's new
+     * @param callback - receives the states, the store, then the search indexes
+     * @return the store, or null if the database couldn't be used and nothing was delivered
+     */
+    private LocationStore loadFromDatabase(Callback callback) throws IOException {
+        String[] stateNames;
+        StartupMetrics.Section section = mMetrics.begin("syncDatabase");
+        try {
+            mDatabase.sync(mContext);
+            stateNames = mDatabase.getStateNames();
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Unable to read the location database", e);
+            return null;
+        } finally {
+            section.end();
+        }
+        mCollator.sort(stateNames);
+        publishStates(callback, DrawerRows.forStates(stateNames));
+        LocationStore store;
+        section = mMetrics.begin("readDatabase");
+        try {
+            store = mDatabase.loadStore(mCollator);
+        } finally {
+            section.end();
+        }
+        publishModel(callback, store);
+
+        checkCancelled();
+        publishSearchIndexes(callback, store, buildFuzzyIndex(store));
+        publishNearbyIndex(callback, store);
+        return store;
+    }
+
+    /**
+     * Populate the location store by streaming the json data from the assets dir
+     * @param callback - receives the states once parsed, the store once the cities are sorted,
+     *                 then the search indexes
+     * @return the store
+     */
+    private LocationStore generateLocations(Callback callback) throws IOException {
+        final LocationStore.Builder builder = new LocationStore.Builder();
+
+        StartupMetrics.Section section = mMetrics.begin("parseJson");
+        try {
+            InputStream is = mContext.getAssets().open(JSON_ASSET);
+            LocationLoader loader = new LocationLoader(is);
+            loader.load(new LocationLoader.LocationListener() {
+                @Override
+                public void onLocation(Location loc) {
+                    checkCancelled();
+                    builder.add(loc);
+                }
+            });
+        } finally {
+            section.end();
+        }
+
+        // Show the sorted states before spending time on the cities
+        publishStates(callback, DrawerRows.forStates(builder.getSortedStateNames(mCollator)));
+
+        // Group the cities by state, sorting the states' cities in parallel
+        LocationStore store;
+        ForkJoinPool pool = new ForkJoinPool();
+        section = mMetrics.begin("buildStore");
+        try {
+            store = builder.build(pool, mCollator);
+        } finally {
+            section.end();
+            pool.shutdown();
+        }
+        publishModel(callback, store);
+
+        // The trigrams are read from the search keys the build folded
+        checkCancelled();
+        publishSearchIndexes(callback, store, buildFuzzyIndex(store));
+        publishNearbyIndex(callback, store);
+        return store;
+    }
+
+    /**
+     * Index every city's trigrams from the store's search keys
+     */
+    private TrigramIndex buildFuzzyIndex(LocationStore store){
+        StartupMetrics.Section section = mMetrics.begin("fuzzyIndex");
+        try {
+            return TrigramIndex.fromStore(store);
+        } finally {
+            section.end();
+        }
+    }
+
+    /**
+     * Deliver the state list on the main thread
+     */
+    private void publishStates(final Callback callback, final DrawerRows states){
+        checkCancelled();
+        postToMain(new Runnable() {
+            @Override
+            public void run() {
+                callback.onStatesLoaded(states);
+            }
+        });
+    }
+
+    /**
+     * Deliver the finished model on the main thread
+     */
+    private void publishModel(final Callback callback, final LocationStore store){
+        checkCancelled();
+        postToMain(new Runnable() {
+            @Override
+            public void run() {
+                callback.onModelReady(store);
+            }
+        });
+    }
+
+    /**
+     * Build the prefix index and deliver both search indexes on the main thread
+     */
+    private void publishSearchIndexes(final Callback callback, LocationStore store,
+                                      final TrigramIndex fuzzyIndex){
+        checkCancelled();
+        final PrefixIndex prefixIndex;
+        StartupMetrics.Section section = mMetrics.begin("prefixIndex");
+        try {
+            prefixIndex = PrefixIndex.build(store);
+        } finally {
+            section.end();
+        }
+        checkCancelled();
+        postToMain(new Runnable() {
+            @Override
+            public void run() {
+                callback.onSearchIndexReady(prefixIndex, fuzzyIndex);
+            }
+        });
+    }
+
+    /**
+     * Build the spatial index and deliver it on the main thread
+     */
+    private void publishNearbyIndex(final Callback callback, LocationStore store){
+        checkCancelled();
+        final SpatialIndex index;
+        StartupMetrics.Section section = mMetrics.begin("nearbyIndex");
+        try {
+            index = SpatialIndex.build(store);
+        } finally {
+            section.end();
+        }
+        checkCancelled();
+        postToMain(new Runnable() {
+            @Override
+            public void run() {
+                callback.onNearbyIndexReady(index);
+            }
+        });
+    }
+
+    /**
+     * Report a failed load on the main thread
+     */
+    private void publishFailure(final Callback callback, final IOException e){
+        Log.e(TAG, "Unable to load locations", e);
+        postToMain(new Runnable() {
+            @Override
+            public void run() {
+                callback.onLoadFailed(e);
+            }
+        });
+    }
+
+    /**
+     * Run on the main thread, unless the task has been cancelled by then
+     * @param runnable - work to run
+     */
+    private void postToMain(final Runnable runnable){
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if(!mCancelled){
+                    runnable.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Stop the loading thread if the task has been cancelled
+     */
+    private void checkCancelled(){
+        if(mCancelled || Thread.currentThread().isInterrupted()){
+            throw new CancellationException();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.caci.recycledrawer;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.caci.recycledrawer.data.DrawerRows;
+import com.caci.recycledrawer.data.PrefixIndex;
+import com.caci.recycledrawer.data.TrigramIndex;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs search-as-you-type queries against a PrefixIndex on a background executor.  When no name
+ * starts with the text, the closest city names from a TrigramIndex are shown instead, for
+ * misspellings.  Every new query cancels the one before it, so only the results for the latest
+ * text are delivered, on the main thread.  Call search from the main thread.
+ */
+public class LocationSearch {
+
+    /**
+     * Receives search results on the main thread
+     */
+    public interface Callback {
+        void onResults(String query, DrawerRows results);
+    }
+
+    /**
+     * Executor the queries run on
+     */
+    private ExecutorService mExecutor;
+
+    /**
+     * Handler for posting results to the main thread
+     */
+    private Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Index to search, null until it's built
+     */
+    private PrefixIndex mIndex;
+
+    /**
+     * Index for misspelled names, null until it's built
+     */
+    private TrigramIndex mFuzzyIndex;
+
+    /**
+     * Running query, if any
+     */
+    private Future<?> mFuture;
+
+    /**
+     * Incremented for every query, so results for an older query are dropped.  Only used on the
+     * main thread
+     */
+    private int mQueryCount;
+
+    /**
+     * Constructor
+     * @param executor - background executor to run the queries on
+     */
+    public LocationSearch(ExecutorService executor){
+        mExecutor = executor;
+    }
+
+    /**
+     * Search for states and cities starting with the given text, replacing any running search
+     * @param query - text typed so far
+     * @param callback - receives the results on the main thread, empty rows until the index is
+     *                 ready
+     */
+    public void search(final String query, final Callback callback){
+        cancel();
+        final int queryNumber = ++mQueryCount;
+        final PrefixIndex index = mIndex;
+        final TrigramIndex fuzzyIndex = mFuzzyIndex;
+        mFuture = mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                final DrawerRows results = find(index, fuzzyIndex, query);
+                if(Thread.currentThread().isInterrupted()){
+                    return;
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(queryNumber == mQueryCount){
+                            callback.onResults(query, results);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Search the indexes.  Runs in the background
+     * @return prefix matches, or the closest names if nothing starts with the query
+     */
+    private static DrawerRows find(PrefixIndex index, TrigramIndex fuzzyIndex, String query){
+        if(index == null){
+            return DrawerRows.empty();
+        }
+        PrefixIndex.Match match = index.search(query);
+        if(match.getStateCount() + match.getCityCount() == 0 && fuzzyIndex != null){
+            return fuzzyIndex.search(query, TrigramIndex.DEFAULT_RESULTS).toRows();
+        }
+        return match.toRows();
+    }
+
+    /**
+     * Stop the running search and drop its results
+     */
+    public void cancel(){
+        mQueryCount++;
+        if(mFuture != null){
+            mFuture.cancel(true);
+            mFuture = null;
+        }
+    }
+
+    /**
+     * Getters and setters
+     * @return
+     */
+    public PrefixIndex getIndex() {
+        return mIndex;
+    }
+
+    public void setIndex(PrefixIndex index) {
+        this.mIndex = index;
+    }
+
+    public TrigramIndex getFuzzyIndex() {
+        return mFuzzyIndex;
+    }
+
+    public void setFuzzyIndex(TrigramIndex fuzzyIndex) {
+        this.mFuzzyIndex = fuzzyIndex;
+    }
+}
@@ -0,0 +1,317 @@
+package com.caci.recycledrawer;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Parcelable;
+
+import com.caci.recycledrawer.data.CityOrderings;
+import com.caci.recycledrawer.data.DrawerRows;
+import com.caci.recycledrawer.data.LocationCollator;
+import com.caci.recycledrawer.data.LocationDatabase;
+import com.caci.recycledrawer.data.LocationStore;
+import com.caci.recycledrawer.data.PrefixIndex;
+import com.caci.recycledrawer.data.SpatialIndex;
+import com.caci.recycledrawer.data.TrigramIndex;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import androidx.lifecycle.ViewModel;
+
+/**
+ * Holds everything the drawer loads and where the user is in it, so recreating the activity for
+ * a rotation or theme change costs no loading, parsing or sorting:
+ *   - The model: the loaded store, indexes and city orderings, the cached city lists, and the
+ *     executors they're built on.  Loaded the first time an activity asks for it, and again if
+ *     an activity asks for it in another locale, since the names are sorted for the locale
+ *   - Navigation: the open state, the Nearby list, the Sort order and the scroll position.
+ *     saveState and restoreState put these in the activity's saved instance state, so after
+ *     process death only they come back and the model is loaded again
+ * The activity attaches a LocationLoadTask.Callback with load.  Results that arrived before it
+ * attached are handed to it at once, in loading order, and results that arrive while no
+ * activity is attached are kept for the next one.
+ */
+public class LocationViewModel extends ViewModel implements LocationLoadTask.Callback {
+
+    /**
+     * Most memory the cached city lists may use
+     */
+    private static final int CITY_CACHE_BYTES = 256 * 1024;
+
+    /**
+     * Keys for the navigation state in the saved instance state
+     */
+    private static final String KEY_OPEN_STATE = "open_state";
+    private static final String KEY_SHOWING_NEARBY = "showing_nearby";
+    private static final String KEY_CITY_ORDER = "city_order";
+    private static final String KEY_SCROLL_STATE = "scroll_state";
+
+    /**
+     * Background executors for loading, sorting the city orders and loading pages of paged
+     * city lists.  They outlive the activity so work started before a rotation finishes
+     */
+    private final ExecutorService mLoadExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService mOrderExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService mPageExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Task loading the location data, null until load is first called
+     */
+    private LocationLoadTask mLoadTask;
+
+    /**
+     * Locale the names were sorted for by the task
+     */
+    private Locale mLocale;
+
+    /**
+     * Activity receiving the loading results, null between activities
+     */
+    private LocationLoadTask.Callback mListener;
+
+    /**
+     * Loading results, each null until it arrives
+     */
+    private DrawerRows mStates;
+    private LocationStore mStore;
+    private CityOrderings mCityOrderings;
+    private PrefixIndex mPrefixIndex;
+    private TrigramIndex mFuzzyIndex;
+    private SpatialIndex mNearbyIndex;
+    private IOException mLoadError;
+
+    /**
+     * Cached city lists and scroll positions for both levels of the drawer
+     */
+    private final DrawerCache mDrawerCache = new DrawerCache(CITY_CACHE_BYTES);
+
+    /**
+     * Navigation state: the state whose cities are shown, null if none, whether the Nearby list
+     * is shown, and the order picked in the Sort menu
+     */
+    private String mOpenState;
+    private boolean mShowingNearby;
+    private int mCityOrder = CityOrderings.ALPHABETICAL;
+
+    /**
+     * Scroll position restored after process death, for the list that's shown first
+     */
+    private Parcelable mRestoredScrollState;
+
+    /**
+     * Start loading if nothing has been loaded yet, or if the model was sorted for another locale
+     * than the collator's, and attach the activity receiving the results
+     * @param context - context, only the application context is kept
+     * @param collator - sorts the names
+     * @param database - database to read the cities from, or null to parse the json
+     * @param listener - receives the results on the main thread, starting with any that already
+     *                 arrived
+     */
+    public void load(Context context, LocationCollator collator, LocationDatabase database,
+                     LocationLoadTask.Callback listener){
+        mListener = listener;
+        if(mLoadTask != null && !collator.getLocale().equals(mLocale)){
+            // The locale changed, the names have to be sorted again.  Where the user is stays
+            clearModel();
+        }
+        if(mLoadTask == null){
+            mLocale = collator.getLocale();
+            mLoadTask = new LocationLoadTask(context, mLoadExecutor, collator);
+            mLoadTask.setDatabase(database);
+            mLoadTask.start(this);
+            return;
+        }
+
+        // Replay what's loaded so far, in the order it was loaded
+        if(mStates != null){
+            listener.onStatesLoaded(mStates);
+        }
+        if(mStore != null){
+            listener.onModelReady(mStore);
+        }
+        if(mPrefixIndex != null){
+            listener.onSearchIndexReady(mPrefixIndex, mFuzzyIndex);
+        }
+        if(mNearbyIndex != null){
+            listener.onNearbyIndexReady(mNearbyIndex);
+        }
+        if(mLoadError != null){
+            listener.onLoadFailed(mLoadError);
+        }
+    }
+
+    /**
+     * Stop loading and drop the model and the city lists made from it
+     */
+    private void clearModel(){
+        mLoadTask.cancel();
+        mLoadTask = null;
+        mStates = null;
+        mStore = null;
+        mCityOrderings = null;
+        mPrefixIndex = null;
+        mFuzzyIndex = null;
+        mNearbyIndex = null;
+        mLoadError = null;
+        mDrawerCache.clear();
+    }
+
+    /**
+     * Stop sending results to the activity.  Call when it's destroyed
+     */
+    public void detach(){
+        mListener = null;
+    }
+
+    /**
+     * Stop loading for good once no activity will come back
+     */
+    @Override
+    protected void onCleared() {
+        if(mLoadTask != null){
+            mLoadTask.cancel();
+        }
+        mLoadExecutor.shutdownNow();
+        mOrderExecutor.shutdownNow();
+        mPageExecutor.shutdownNow();
+    }
+
+    @Override
+    public void onStatesLoaded(DrawerRows states) {
+        mStates = states;
+        if(mListener != null){
+            mListener.onStatesLoaded(states);
+        }
+    }
+
+    @Override
+    public void onModelReady(LocationStore store) {
+        mStore = store;
+        mCityOrderings = new CityOrderings(store);
+        if(mListener != null){
+            mListener.onModelReady(store);
+        }
+    }
+
+    @Override
+    public void onSearchIndexReady(PrefixIndex prefixIndex, TrigramIndex fuzzyIndex) {
+        mPrefixIndex = prefixIndex;
+        mFuzzyIndex = fuzzyIndex;
+        if(mListener != null){
+            mListener.onSearchIndexReady(prefixIndex, fuzzyIndex);
+        }
+    }
+
+    @Override
+    public void onNearbyIndexReady(SpatialIndex index) {
+        mNearbyIndex = index;
+        if(mListener != null){
+            mListener.onNearbyIndexReady(index);
+        }
+    }
+
+    @Override
+    public void onLoadFailed(IOException e) {
+        mLoadError = e;
+        if(mListener != null){
+            mListener.onLoadFailed(e);
+        }
+    }
+
+    /**
+     * Save the navigation state, not the data, for when the process is killed
+     * @param outState - the activity's saved instance state
+     * @param scrollState - scroll position of the list being shown
+     */
+    public void saveState(Bundle outState, Parcelable scrollState){
+        outState.putString(KEY_OPEN_STATE, mOpenState);
+        outState.putBoolean(KEY_SHOWING_NEARBY, mShowingNearby);
+        outState.putInt(KEY_CITY_ORDER, mCityOrder);
+        outState.putParcelable(KEY_SCROLL_STATE, scrollState);
+    }
+
+    /**
+     * Restore the navigation state saved before the process was killed.  Does nothing if this
+     * view model already knows where the user is, which is the case after a rotation
+     * @param savedState - the activity's saved instance state
+     */
+    public void restoreState(Bundle savedState){
+        if(mLoadTask != null){
+            return;
+        }
+        mOpenState = savedState.getString(KEY_OPEN_STATE);
+        mShowingNearby = savedState.getBoolean(KEY_SHOWING_NEARBY);
+        mCityOrder = savedState.getInt(KEY_CITY_ORDER, CityOrderings.ALPHABETICAL);
+        mRestoredScrollState = savedState.getParcelable(KEY_SCROLL_STATE);
+    }
+
+    /**
+     * Get the scroll position restored after process death, once
+     * @return scroll state, or null if there is none or it was already taken
+     */
+    public Parcelable takeRestoredScrollState(){
+        Parcelable scrollState = mRestoredScrollState;
+        mRestoredScrollState = null;
+        return scrollState;
+    }
+
+    /**
+     * Record which list the drawer shows
+     * @param openState - state whose cities are shown, or null
+     * @param showingNearby - whether the Nearby list is shown
+     */
+    public void setNavigation(String openState, boolean showingNearby){
+        mOpenState = openState;
+        mShowingNearby = showingNearby;
+    }
+
+    /**
+     * Getters and setters
+     * @return
+     */
+    public DrawerRows getStates() {
+        return mStates != null ? mStates : DrawerRows.empty();
+    }
+
+    public LocationStore getStore() {
+        return mStore;
+    }
+
+    public CityOrderings getCityOrderings() {
+        return mCityOrderings;
+    }
+
+    public SpatialIndex getNearbyIndex() {
+        return mNearbyIndex;
+    }
+
+    public DrawerCache getDrawerCache() {
+        return mDrawerCache;
+    }
+
+    public ExecutorService getOrderExecutor() {
+        return mOrderExecutor;
+    }
+
+    public ExecutorService getPageExecutor() {
+        return mPageExecutor;
+    }
+
+    public String getOpenState() {
+        return mOpenState;
+    }
+
+    public boolean isShowingNearby() {
+        return mShowingNearby;
+    }
+
+    public int getCityOrder() {
+        return mCityOrder;
+    }
+
+    public void setCityOrder(int cityOrder) {
+        this.mCityOrder = cityOrder;
+    }
+}
@@ -1,14 +1,32 @@
 package com.caci.recycledrawer;
 
+import android.Manifest;
+import android.content.pm.PackageManager;
 import android.os.Bundle;
-
-import com.caci.recycledrawer.data.CityHeaderData;
-import com.caci.recycledrawer.data.Location;
-import com.caci.recycledrawer.data.StateHeaderData;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcelable;
+import android.text.Editable;
+import android.text.TextWatcher;
+
+import com.caci.recycledrawer.data.CityOrderings;
+import com.caci.recycledrawer.data.DrawerRows;
+import com.caci.recycledrawer.data.IndexPageSource;
+import com.caci.recycledrawer.data.LocationCollator;
+import com.caci.recycledrawer.data.LocationDatabase;
+import com.caci.recycledrawer.data.LocationStore;
+import com.caci.recycledrawer.data.PagedCityList;
+import com.caci.recycledrawer.data.PrefixIndex;
+import com.caci.recycledrawer.data.SpatialIndex;
+import com.caci.recycledrawer.data.TrigramIndex;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.snackbar.Snackbar;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -16,42 +34,102 @@ import android.util.Log;
 import android.view.View;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.widget.EditText;
+import android.widget.FrameLayout;
 import android.widget.TextSwitcher;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Creates a RecyclerView of a list of states and gives it a bottom drawer behavior.  When clicking
- * on a state, the RecyclerView will be emptied, assigned a new adapter, and populated with a list
- * of cities.
+ * on a state, the adapter's rows are switched to the state's list of cities, reusing the same
+ * ViewHolders.  Typing in the search box replaces the rows with the states and cities whose names
+ * start with the text, or the closest city names if none do.  The Nearby menu item lists the
+ * cities closest to the device, kept up to date as it moves.  The Sort menu switches the order
+ * of the city lists.  States with more than PAGED_MIN_CITIES cities are read from the mapped
+ * index a page at a time as they're scrolled through, instead of from the store.
+ *
+ * The loaded model and where the user is in the drawer live in a LocationViewModel, so a
+ * rotation or theme change shows the same list again without loading anything.  After process
+ * death only the navigation state comes back and the model is loaded again.
  */
 public class MainActivity extends AppCompatActivity {
 
     /**
-     * List of location names
-     * First object is a StateHeaderData
-     * The rest are Strings of state names
+     * Number of cities in the Nearby list
+     */
+    private static final int NEARBY_COUNT = 50;
+
+    /**
+     * Request code for the location permission
+     */
+    private static final int REQUEST_LOCATION = 1;
+
+    /**
+     * Keep the cities in a SQLite database, so launches without the prebuilt index don't parse
+     * the json every time
+     */
+    private static final boolean USE_DATABASE = true;
+
+    /**
+     * States with at least this many cities are shown as paged lists
+     */
+    private static final int PAGED_MIN_CITIES = 5000;
+
+    /**
+     * Time the adapter's view holder creates and binds, and show the percentiles over the
+     * drawer.  Release builds don't time anything, the adapter only checks for null stats
+     */
+    private static final boolean COLLECT_ADAPTER_STATS = BuildConfig.DEBUG;
+    private static final boolean SHOW_ADAPTER_STATS = false;
+
+    /**
+     * Rows for the list of states, a state header followed by the state names.  Empty until the
+     * states are loaded
+     */
+    private DrawerRows states = DrawerRows.empty();
+
+    /**
+     * The loaded states and cities.  Null until loading has finished
+     */
+    private LocationStore store;
+
+    /**
+     * Background executor for loading the pages of paged city lists, from the view model
      */
-    private List<Object> states = new ArrayList<>();
+    private ExecutorService pageExecutor;
 
     /**
-     * List of city names
-     * First object in each list is a CityHeaderData
-     * The rest are names of cities as Strings
+     * Runs a paged city list's callbacks on the main thread.  Paged lists are kept in the view
+     * model's DrawerCache, so this mustn't hold on to the activity
      */
-    private Map<String, List<Object>> cities = new HashMap<>();
+    private final Executor mainThreadExecutor = new MainThreadExecutor();
+
+    /**
+     * Rebinds a paged city list's rows as its pages load
+     */
+    private PagedCityList.Listener pageListener;
+
+    /**
+     * Each state's cities in every order, sorted the first time the state is shown.  Null
+     * until loading has finished
+     */
+    private CityOrderings cityOrderings;
+
+    /**
+     * Background executor for sorting the city orders, from the view model
+     */
+    private ExecutorService orderExecutor;
+
+    /**
+     * Holds the loaded model and the navigation state across configuration changes
+     */
+    private LocationViewModel viewModel;
 
     /**
      * RecyclerView that will hold our states
@@ -64,19 +142,60 @@ public class MainActivity extends AppCompatActivity {
     private LocationAdapter locationAdapter;
 
     /**
-     * Adapter for putting cities in the recyclerview
+     * Cached city lists and scroll positions for both levels of the drawer, from the view model
      */
-    private CityAdapter cityAdapter;
+    private DrawerCache drawerCache;
 
     /**
-     * Floating action button to create new location
+     * Cache entry for the cities being shown, null when the states are shown
      */
-    private FloatingActionButton fab;
+    private DrawerCache.Entry currentCities;
 
     /**
-     * List of location objects to be build from the json data
+     * Pre-inflates view holders for the recyclerview
      */
-    private List<Location> locations = new ArrayList<>();
+    private ViewHolderWarmer viewHolderWarmer;
+
+    /**
+     * Create and bind times of the adapter, and the overlay showing them.  Null when they're off
+     */
+    private AdapterStats adapterStats;
+    private AdapterStatsOverlay adapterStatsOverlay;
+
+    /**
+     * Background executor for calculating row diffs
+     */
+    private ExecutorService diffExecutor;
+
+    /**
+     * Search box above the recyclerview
+     */
+    private EditText searchText;
+
+    /**
+     * Runs the searches typed in the search box
+     */
+    private LocationSearch locationSearch;
+
+    /**
+     * Background executor for searching and nearby queries
+     */
+    private ExecutorService searchExecutor;
+
+    /**
+     * Index of the city coordinates.  Null until loading has finished
+     */
+    private SpatialIndex nearbyIndex;
+
+    /**
+     * Keeps the Nearby list up to date, null until it's first shown
+     */
+    private NearbyTracker nearbyTracker;
+
+    /**
+     * Floating action button to create new location
+     */
+    private FloatingActionButton fab;
 
     /**
      * Click listener to be given to the recyclerview when a user clicks on a city
@@ -102,21 +221,108 @@ public class MainActivity extends AppCompatActivity {
      */
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        // Each phase is traced and timed, see StartupMetrics
+        StartupMetrics metrics = StartupMetrics.getInstance();
+        StartupMetrics.Section onCreate = metrics.begin("onCreate");
         super.onCreate(savedInstanceState);
+        StartupMetrics.Section phase = metrics.begin("setContentView");
         setContentView(R.layout.activity_main);
+        phase.end();
+
+        // Pick up the model and the navigation state from before a configuration change, or
+        // the navigation state from before the process was killed
+        phase = metrics.begin("getViewModel");
+        viewModel = new ViewModelProvider(this, new ViewModelProvider.NewInstanceFactory())
+                .get(LocationViewModel.class);
+        if(savedInstanceState != null){
+            viewModel.restoreState(savedInstanceState);
+        }
+        drawerCache = viewModel.getDrawerCache();
+        orderExecutor = viewModel.getOrderExecutor();
+        pageExecutor = viewModel.getPageExecutor();
+        phase.end();
 
         // Initialize the state and city click listeners
+        phase = metrics.begin("createListeners");
         createListeners();
+        phase.end();
 
         // Create floating action button
+        phase = metrics.begin("createFab");
         createFab();
+        phase.end();
 
-        // Generate a list of states from the json file in the assests dir
-        generateLocations();
-
-        // Create the RecyclerView populated with states
+        // Create the RecyclerView, which is populated with states once they're loaded
+        phase = metrics.begin("createRecyclerView");
         createRecyclerView();
+        phase.end();
+
+        // Search the states and cities as the user types
+        phase = metrics.begin("createSearch");
+        createSearch();
+        phase.end();
+
+        // Load the states and cities in the background, or show them again if they're loaded
+        phase = metrics.begin("startLoading");
+        startLoading();
+        phase.end();
+        onCreate.end();
+    }
 
+    /**
+     * Remember where the user is in the drawer, for when the process is killed
+     * @param outState
+     */
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        rememberScrollState();
+        viewModel.saveState(outState, locationRecycler.getLayoutManager().onSaveInstanceState());
+    }
+
+    /**
+     * Keep the adapter stats overlay up to date while the activity is in front
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if(adapterStatsOverlay != null){
+            adapterStatsOverlay.start();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        if(adapterStatsOverlay != null){
+            adapterStatsOverlay.stop();
+        }
+        super.onPause();
+    }
+
+    /**
+     * Stop this activity's work when it goes away.  Loading carries on in the view model
+     */
+    @Override
+    protected void onDestroy() {
+        viewModel.detach();
+        locationSearch.cancel();
+        if(nearbyTracker != null){
+            nearbyTracker.stop();
+        }
+        PagedCityList paged = locationAdapter.getmRows().getPagedCities();
+        if(paged != null){
+            paged.setListener(null);
+            paged.release();
+        }
+        viewHolderWarmer.cancel();
+        if(adapterStats != null){
+            Log.d("AdapterStats", adapterStats.summary() + "main thread inflations "
+                    + viewHolderWarmer.getMainThreadInflations() + ", async inflations "
+                    + viewHolderWarmer.getAsyncInflations());
+        }
+        searchExecutor.shutdownNow();
+        diffExecutor.shutdownNow();
+        super.onDestroy();
     }
 
 
@@ -133,9 +339,42 @@ public class MainActivity extends AppCompatActivity {
         LinearLayoutManager layoutManager = new LinearLayoutManager(this);
         locationRecycler.setLayoutManager(layoutManager);
 
-        // Create the adapter and set it for the recyclerview
-        locationAdapter = new LocationAdapter(states, stateListerner);
-        putStatesInRecycler();
+        // Create the adapter and set it for the recyclerview.  The same adapter shows the states
+        // and the cities
+        diffExecutor = Executors.newSingleThreadExecutor();
+        locationAdapter = new LocationAdapter(DrawerRows.empty(), stateListerner, cityListerner, cityBackListener, diffExecutor);
+        locationRecycler.setAdapter(locationAdapter);
+        if(COLLECT_ADAPTER_STATS){
+            adapterStats = new AdapterStats();
+            locationAdapter.setStats(adapterStats);
+            if(SHOW_ADAPTER_STATS){
+                adapterStatsOverlay = new AdapterStatsOverlay(
+                        (FrameLayout) findViewById(android.R.id.content), adapterStats);
+            }
+        }
+
+        // Tell a paged city list what's on screen, so it loads the pages around it
+        locationRecycler.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                PagedCityList paged = locationAdapter.getmRows().getPagedCities();
+                if(paged != null){
+                    LinearLayoutManager manager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                    // Row 0 is the header
+                    paged.onViewport(manager.findFirstVisibleItemPosition() - 1,
+                            manager.findLastVisibleItemPosition() - 1);
+                }
+            }
+        });
+
+        // Inflate view holders in the background while the app is idle.  The pool keeps enough
+        // name rows to fill the screen, so switching between states and cities rebinds the
+        // existing views instead of inflating new ones
+        viewHolderWarmer = new ViewHolderWarmer(this, locationRecycler, locationAdapter);
+        viewHolderWarmer.setTarget(DrawerRows.STATE_HEADER, 1);
+        viewHolderWarmer.setTarget(DrawerRows.CITY_HEADER, 1);
+        viewHolderWarmer.setTarget(DrawerRows.LOCATION_ITEM, 12);
+        viewHolderWarmer.warmWhenIdle();
     }
 
 
@@ -144,25 +383,255 @@ public class MainActivity extends AppCompatActivity {
 
 
     /**
-     * Switch the adapter for the recyclerview to the locationAdapter.  This will populate
-     * the recyclerview with the list of states.
+     * Set up the search box.  Every change to the text starts a new search, replacing the one
+     * still running
+     */
+    private void createSearch(){
+        searchText = (EditText) findViewById(R.id.search_locations);
+        searchExecutor = Executors.newSingleThreadExecutor();
+        locationSearch = new LocationSearch(searchExecutor);
+        searchText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                search(s.toString());
+            }
+        });
+    }
+
+    /**
+     * Show the states and cities starting with the given text, or go back to the states when
+     * the text is cleared
+     * @param query - text in the search box
+     */
+    private void search(String query){
+        if(query.isEmpty()){
+            locationSearch.cancel();
+            if(locationAdapter.getmRows().getKind() == DrawerRows.KIND_SEARCH){
+                putStatesInRecycler();
+            }
+            return;
+        }
+        locationSearch.search(query, new LocationSearch.Callback() {
+            @Override
+            public void onResults(String query, DrawerRows results) {
+                saveScrollState();
+                viewModel.setNavigation(null, false);
+                locationAdapter.submitRows(results);
+                locationRecycler.scrollToPosition(0);
+            }
+        });
+    }
+
+    /**
+     * Show the cities nearest the device, asking for the location permission first if needed
+     */
+    private void showNearby(){
+        if(nearbyIndex == null){
+            Toast.makeText(this, "Still loading cities", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if(ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED){
+            ActivityCompat.requestPermissions(this,
+                    new String[]{Manifest.permission.ACCESS_COARSE_LOCATION}, REQUEST_LOCATION);
+            return;
+        }
+        startNearby();
+    }
+
+    /**
+     * Show the Nearby list and start following the device's location
+     */
+    private void startNearby(){
+        if(nearbyTracker == null){
+            nearbyTracker = new NearbyTracker(this, searchExecutor, nearbyIndex, NEARBY_COUNT,
+                    new NearbyTracker.Callback() {
+                        @Override
+                        public void onNearby(DrawerRows rows) {
+                            if(locationAdapter.getmRows().getKind() == DrawerRows.KIND_NEARBY){
+                                locationAdapter.submitRows(rows);
+                            } else{
+                                // The user moved on to another list
+                                nearbyTracker.stop();
+                            }
+                        }
+                    });
+        }
+        if(!nearbyTracker.start()){
+            Toast.makeText(this, "Location isn't available on this device", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        // Show the header until the first location comes in
+        saveScrollState();
+        viewModel.setNavigation(null, true);
+        locationAdapter.submitRows(DrawerRows.forNearby(store, new int[0], 0));
+        locationRecycler.scrollToPosition(0);
+    }
+
+    /**
+     * Stop following the device's location
+     */
+    private void stopNearby(){
+        if(nearbyTracker != null){
+            nearbyTracker.stop();
+        }
+    }
+
+    /**
+     * Show the Nearby list once the location permission is granted
+     */
+    @Override
+    public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions,
+                                           @NonNull int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        if(requestCode == REQUEST_LOCATION && grantResults.length > 0
+                && grantResults[0] == PackageManager.PERMISSION_GRANTED){
+            startNearby();
+        }
+    }
+
+    /**
+     * Remember where the list being shown was scrolled to, so it can be restored when the user
+     * comes back to it, and let go of it
+     */
+    private void saveScrollState(){
+        rememberScrollState();
+        // A paged list's pages are loaded again if it's shown again
+        PagedCityList paged = locationAdapter.getmRows().getPagedCities();
+        if(paged != null){
+            paged.setListener(null);
+            paged.release();
+        }
+        currentCities = null;
+    }
+
+    /**
+     * Remember where the list being shown was scrolled to in the drawer cache
+     */
+    private void rememberScrollState(){
+        if(locationAdapter.getItemCount() == 0){
+            // Nothing shown yet, keep what was remembered before
+            return;
+        }
+        Parcelable scrollState = locationRecycler.getLayoutManager().onSaveInstanceState();
+        int kind = locationAdapter.getmRows().getKind();
+        if(kind == DrawerRows.KIND_STATES){
+            drawerCache.setStatesScrollState(scrollState);
+        } else if(kind == DrawerRows.KIND_CITIES && currentCities != null){
+            currentCities.setScrollState(scrollState);
+        }
+    }
+
+    /**
+     * Switch the adapter's rows to the list of states.  This will populate the recyclerview
+     * with the list of states.
      */
     public void putStatesInRecycler(){
-        locationRecycler.setAdapter(locationAdapter);
+        // Remember where the city list was left
+        if(currentCities != null){
+            saveScrollState();
+        }
+        viewModel.setNavigation(null, false);
+        locationAdapter.submitRows(states);
+        restoreScrollState(drawerCache.getStatesScrollState());
     }
 
     /**
      * Give the list of cities (by state) to the adapter and bind.  This will happen when
-     * a user clicks on a state and it's time to wipe the recyclerview and recreate it with
-     * matching city names
+     * a user clicks on a state and it's time to replace the state rows with matching city names
      */
     public void putCitiesInRecycler(String state){
-        cityAdapter = new CityAdapter(getCitiesByState(state), cityListerner, cityBackListener);
-        // Give the recyclerview a new adapter.  We can't use "swapAdapter" because that will
-        // keep the same click listener as before, when we really need a new click listener to
-        // know what to do when clicking on a city
-//        locationRecycler.swapAdapter(cityAdapter, true);
-        locationRecycler.setAdapter(cityAdapter);
+        // Remember where the state list or search results were left
+        saveScrollState();
+        viewModel.setNavigation(state, false);
+        currentCities = getCitiesByState(state);
+        DrawerRows rows = currentCities.getRows();
+        if(rows.getPagedCities() != null){
+            rows.getPagedCities().setListener(pageListener);
+        }
+        applyCityOrder(rows);
+        locationAdapter.submitRows(rows);
+        restoreScrollState(currentCities.getScrollState());
+    }
+
+    /**
+     * Put a city list in the order picked in the Sort menu.  The first time a state is shown its
+     * orders are sorted in the background, and the list is alphabetical until they're ready
+     * @param rows - a state's city rows, shown or about to be
+     */
+    private void applyCityOrder(final DrawerRows rows){
+        final int state;
+        if(rows.getPagedCities() != null){
+            state = store.findState(rows.getPagedCities().getStateName());
+        } else if(rows.getCities() != null){
+            state = rows.getCities().getState();
+        } else{
+            return;
+        }
+        if(state < 0){
+            return;
+        }
+        if(cityOrderings.isPrepared(state)){
+            int[] cityRows = cityOrderings.get(state, viewModel.getCityOrder());
+            if(locationAdapter.getmRows() == rows){
+                locationAdapter.setCityOrder(cityRows);
+            } else{
+                rows.setCityOrder(cityRows);
+            }
+            return;
+        }
+        orderExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                cityOrderings.prepare(state);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Only if the user is still looking at the state
+                        if(currentCities != null && currentCities.getRows() == rows){
+                            applyCityOrder(rows);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Switch the order of the city lists
+     * @param order - one of the CityOrderings constants
+     */
+    private void setCityOrder(int order){
+        viewModel.setCityOrder(order);
+        if(currentCities != null && locationAdapter.getmRows() == currentCities.getRows()){
+            applyCityOrder(currentCities.getRows());
+            locationRecycler.scrollToPosition(0);
+        }
+    }
+
+    /**
+     * Scroll the recyclerview back to where a list was left
+     * @param scrollState - saved layout manager state, or null to scroll to the top
+     */
+    private void restoreScrollState(Parcelable scrollState){
+        // The first list shown after the process was killed goes back to where it was
+        Parcelable restored = viewModel.takeRestoredScrollState();
+        if(restored != null){
+            scrollState = restored;
+        }
+        if(scrollState != null){
+            locationRecycler.getLayoutManager().onRestoreInstanceState(scrollState);
+        } else{
+            locationRecycler.scrollToPosition(0);
+        }
     }
 
     /**
@@ -179,26 +648,42 @@ public class MainActivity extends AppCompatActivity {
             }
         };
 
-        // State listener will empty out all the state entries from the recyclerview, and attach
-        // a new adapter to populate it with the list of cities for the state that was clicked on
+        // State listener will replace all the state entries in the recyclerview with the list of
+        // cities for the state that was clicked on
         stateListerner = new RecyclerViewClickListener() {
             @Override
             public void onClick(int position) {
                 Log.i("Click", "Clicked state: " + position);
-                if(states.get(position) instanceof String) {
-                    String state = (String)states.get(position);
-                    //removeAllLocations();
+                if(store == null){
+                    Toast.makeText(MainActivity.this, "Still loading cities", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                DrawerRows rows = locationAdapter.getmRows();
+                if(rows.getViewType(position) == DrawerRows.LOCATION_ITEM) {
+                    String state = rows.getStateName(position);
                     putCitiesInRecycler(state);
                 }
             }
         };
 
+        // Rebind a paged city list's rows as its pages arrive
+        pageListener = new PagedCityList.Listener() {
+            @Override
+            public void onPageLoaded(PagedCityList list, int start, int count) {
+                // Only if the list is still shown, row 0 is the header
+                if(locationAdapter.getmRows().getPagedCities() == list){
+                    locationAdapter.notifyItemRangeChanged(1 + start, count);
+                }
+            }
+        };
+
         // Listener for the back button in the citites header to take us back to the state view
         cityBackListener = new View.OnClickListener() {
             @Override
             public void onClick(View view) {
                 Log.i("Click", "Clicked back button");
 
+                stopNearby();
                 putStatesInRecycler();
             }
         };
@@ -209,104 +694,102 @@ public class MainActivity extends AppCompatActivity {
 
 
     /**
-     * open the cities file and parse
+     * Start loading the location data off the main thread.  The states are shown as soon as
+     * they're known, and state clicks work once the model is ready.  If the view model already
+     * loaded it, everything loaded is delivered straight away and the drawer goes back to the
+     * list that was shown
      */
-    private String loadLocations(){
-        String json = null;
-        try {
-            InputStream is = getApplication().getAssets().open("cities.json");
-            int size = is.available();
-            byte[] buffer = new byte[size];
-            is.read(buffer);
-            is.close();
-            json = new String(buffer, "UTF-8");
-        } catch (IOException ex) {
-            ex.printStackTrace();
-            return null;
-        }
-        return json;
-    }
+    private void startLoading(){
+        // Sort for the current locale
+        LocationCollator collator = LocationCollator.getInstance();
+        collator.setLocale(getResources().getConfiguration().locale);
+        LocationDatabase database = USE_DATABASE ? new LocationDatabase(this) : null;
+        viewModel.load(this, collator, database, new LocationLoadTask.Callback() {
+            @Override
+            public void onStatesLoaded(DrawerRows loadedStates) {
+                states = loadedStates;
+                if(locationAdapter.getmRows().getKind() == DrawerRows.KIND_STATES
+                        && viewModel.getOpenState() == null && !viewModel.isShowingNearby()) {
+                    putStatesInRecycler();
+                }
+                // Size the pool for the rows that fit on screen once they're laid out
+                viewHolderWarmer.warmWhenIdle();
+            }
 
-    /**
-     * Populate our location, city, and state list from the json data
-     */
-    private void generateLocations(){
-        try {
-            JSONArray array = new JSONArray(loadLocations());
-            ArrayList<String> stateNames = new ArrayList<>();
-            for(int i=0; i<array.length(); i++){
-                JSONObject row = array.getJSONObject(i);
-                String state = row.get("state").toString();
-                String city = row.get("city").toString();
+            @Override
+            public void onModelReady(LocationStore loadedStore) {
+                store = loadedStore;
+                cityOrderings = viewModel.getCityOrderings();
+                // Reopen the state that was open before the activity was recreated
+                if(viewModel.getOpenState() != null){
+                    putCitiesInRecycler(viewModel.getOpenState());
+                }
+            }
+
+            @Override
+            public void onSearchIndexReady(PrefixIndex prefixIndex, TrigramIndex fuzzyIndex) {
+                locationSearch.setIndex(prefixIndex);
+                locationSearch.setFuzzyIndex(fuzzyIndex);
+                // Run the search again if the user typed before the index was ready
+                search(searchText.getText().toString());
+            }
 
-                // Add city and state basic names
-                if(!stateNames.contains(state)) {
-                    stateNames.add(state);
+            @Override
+            public void onNearbyIndexReady(SpatialIndex index) {
+                nearbyIndex = index;
+                if(viewModel.isShowingNearby()){
+                    showNearby();
                 }
-                if(!cities.containsKey(state)){
-                    List<Object> tempCity = new ArrayList<>();
-                    // Create a header object with the state name and add it first
-                    //CityHeaderData cityHeader = new CityHeaderData(state);
-                    //tempCity.add(cityHeader);
-                    tempCity.add(city);
-                    cities.put(state, tempCity);
-                }else{
-                    cities.get(state).add(city);
+                // Everything is loaded, show where startup's time went
+                if(BuildConfig.DEBUG){
+                    StartupMetrics.getInstance().log();
                 }
+            }
 
-                // Add a new location object to our list
-                Location loc = new Location(state, city);
-                locations.add(loc);
+            @Override
+            public void onLoadFailed(IOException e) {
+                // LocationLoadTask already logged the cause
+                if(BuildConfig.DEBUG){
+                    StartupMetrics.getInstance().log();
+                }
+                Toast.makeText(MainActivity.this, "Unable to load locations", Toast.LENGTH_LONG).show();
             }
-            // Sort the list of states and cities alphebetically
-            createAndSortStatesAndCities(stateNames);
-        }catch (JSONException e) {
-            e.printStackTrace();
-        }
+        });
     }
 
-
     /**
-     * Get a list of all cities belonging to the given state
+     * Get all cities belonging to the given state, from the cache if the state was shown before
      * @param state - the state to search for
-     * @return - list of cities
+     * @return - cache entry with rows for the state's cities, a city header followed by the city
+     * names
      */
-    private List<Object> getCitiesByState(String state){
-        List<Object> cityList = new ArrayList<>();
-        if(cities.containsKey(state)){
-            cityList = cities.get(state);
+    private DrawerCache.Entry getCitiesByState(String state){
+        DrawerCache.Entry entry = drawerCache.getCities(state);
+        if(entry == null){
+            PagedCityList paged = createPagedCities(state);
+            DrawerRows rows = paged != null ? DrawerRows.forPagedCities(paged)
+                    : DrawerRows.forCities(store.getCitiesByState(state));
+            entry = drawerCache.putCities(state, rows);
         }
-        return cityList;
+        return entry;
     }
 
     /**
-     * Sort both the States list and all cities lists in the city hashmap
+     * Page through a state's cities if the store is read from the mapped index and the state
+     * has enough of them to be worth it
+     * @param state - state name
+     * @return the paged cities, or null to list the state from the store
      */
-    public void createAndSortStatesAndCities(ArrayList<String> stateNames){
-        // First sort the state names
-        Collections.sort(stateNames);
-        // Add a state header object followed by the sorted state list
-        StateHeaderData stateHeader = new StateHeaderData("US States", stateNames.size());
-        states.add(0, stateHeader);
-        states.addAll(stateNames);
-
-        // For every state, sort their city names
-        for(String key : cities.keySet()){
-            List<String> cityNames = new ArrayList<>();
-            String currentState = key;
-            for(Object cityObj : cities.get(key)){
-                if(cityObj instanceof String){
-                    cityNames.add((String)cityObj);
-                }
-            }
-            //Sort the list of city names only
-            Collections.sort(cityNames);
-            CityHeaderData newHeader = new CityHeaderData(currentState);
-            // Replace the current list
-            cities.get(key).clear();
-            cities.get(key).add(newHeader);
-            cities.get(key).addAll(cityNames);
+    private PagedCityList createPagedCities(String state){
+        if(!store.isMapped()){
+            return null;
+        }
+        LocationStore.CitySlice cities = store.getCitiesByState(state);
+        if(cities.size() < PAGED_MIN_CITIES){
+            return null;
         }
+        return new PagedCityList(state, new IndexPageSource(cities), pageExecutor,
+                mainThreadExecutor);
     }
 
     /**
@@ -329,6 +812,11 @@ public class MainActivity extends AppCompatActivity {
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.menu_main, menu);
+        // Check the order that was picked before the activity was recreated
+        MenuItem sortItem = menu.findItem(getCityOrderItem(viewModel.getCityOrder()));
+        if(sortItem != null){
+            sortItem.setChecked(true);
+        }
         return true;
     }
 
@@ -343,10 +831,56 @@ public class MainActivity extends AppCompatActivity {
         if (id == R.id.action_settings) {
             return true;
         }
+        if (id == R.id.action_nearby) {
+            showNearby();
+            return true;
+        }
+        int order = getCityOrder(id);
+        if (order >= 0) {
+            item.setChecked(true);
+            setCityOrder(order);
+            return true;
+        }
 
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Get the city order for a Sort menu item
+     * @param id - menu item id
+     * @return one of the CityOrderings constants, or -1 if the item isn't in the Sort menu
+     */
+    private static int getCityOrder(int id){
+        if(id == R.id.sort_alphabetical){
+            return CityOrderings.ALPHABETICAL;
+        } else if(id == R.id.sort_population){
+            return CityOrderings.POPULATION;
+        } else if(id == R.id.sort_rank){
+            return CityOrderings.RANK;
+        } else if(id == R.id.sort_growth){
+            return CityOrderings.GROWTH;
+        }
+        return -1;
+    }
+
+    /**
+     * Get the Sort menu item for a city order
+     * @param order - one of the CityOrderings constants
+     * @return menu item id
+     */
+    private static int getCityOrderItem(int order){
+        switch(order){
+            case CityOrderings.POPULATION:
+                return R.id.sort_population;
+            case CityOrderings.RANK:
+                return R.id.sort_rank;
+            case CityOrderings.GROWTH:
+                return R.id.sort_growth;
+            default:
+                return R.id.sort_alphabetical;
+        }
+    }
+
     /**
      * Not needed but nice to reference in the future
      */
@@ -366,4 +900,18 @@ public class MainActivity extends AppCompatActivity {
         locationAdapter.clear();
         locationAdapter.notifyDataSetChanged();
     }
+
+    /**
+     * Posts to the main looper.  Static, so it keeps no reference to the activity
+     * ----------------------------------------------------------------------------
+     */
+    private static class MainThreadExecutor implements Executor {
+
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            mHandler.post(command);
+        }
+    }
 }
@@ -0,0 +1,172 @@
+package com.caci.recycledrawer;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.caci.recycledrawer.data.DrawerRows;
+import com.caci.recycledrawer.data.SpatialIndex;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Keeps a "Nearby" list of the cities nearest the device up to date.  Every location update
+ * runs a nearest cities query on a background executor and delivers the rows on the main thread.
+ *   - Queries fill the same SpatialIndex.Result.  Its rows are copied on the main thread before
+ *     they're delivered, since the adapter keeps the rows it's given and may still be diffing
+ *     them in the background when the next query runs
+ *   - Only one query runs at a time.  Updates that arrive meanwhile replace each other, and the
+ *     latest one is queried when the running query finishes
+ * Locations come from the network provider.  The caller has to hold the location permission
+ * before calling start.
+ */
+public class NearbyTracker implements LocationListener {
+
+    /**
+     * Receives the nearby rows on the main thread
+     */
+    public interface Callback {
+        void onNearby(DrawerRows rows);
+    }
+
+    /**
+     * Least time and distance between location updates
+     */
+    private static final long MIN_UPDATE_MS = 5000;
+    private static final float MIN_UPDATE_METERS = 100;
+
+    private LocationManager mLocationManager;
+    private ExecutorService mExecutor;
+    private Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private SpatialIndex mIndex;
+    private int mCount;
+    private Callback mCallback;
+
+    /**
+     * Result the queries fill
+     */
+    private SpatialIndex.Result mResult;
+
+    /**
+     * Latest location not yet queried, and whether a query is running.  Only used on the main
+     * thread
+     */
+    private Location mPending;
+    private boolean mQueryRunning;
+    private boolean mStarted;
+
+    /**
+     * Constructor
+     * @param context - context for the location service
+     * @param executor - background executor to run the queries on
+     * @param index - index of the city coordinates
+     * @param count - number of cities to list
+     * @param callback - receives the rows on the main thread
+     */
+    public NearbyTracker(Context context, ExecutorService executor, SpatialIndex index, int count,
+                         Callback callback){
+        mLocationManager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+        mExecutor = executor;
+        mIndex = index;
+        mCount = count;
+        mCallback = callback;
+        mResult = new SpatialIndex.Result(count);
+    }
+
+    /**
+     * Start listening for location updates, starting with the last known location
+     * @return false if the device has no network location provider to listen to
+     */
+    @SuppressLint("MissingPermission")
+    public boolean start(){
+        if(mStarted){
+            return true;
+        }
+        if(!mLocationManager.getAllProviders().contains(LocationManager.NETWORK_PROVIDER)){
+            return false;
+        }
+        mStarted = true;
+        mLocationManager.requestLocationUpdates(LocationManager.NETWORK_PROVIDER, MIN_UPDATE_MS,
+                MIN_UPDATE_METERS, this);
+        Location last = mLocationManager.getLastKnownLocation(LocationManager.NETWORK_PROVIDER);
+        if(last != null){
+            onLocationChanged(last);
+        }
+        return true;
+    }
+
+    /**
+     * Stop listening for location updates and drop any results not yet delivered
+     */
+    public void stop(){
+        mStarted = false;
+        mPending = null;
+        mLocationManager.removeUpdates(this);
+    }
+
+    /**
+     * Check whether the tracker is listening for location updates
+     * @return true once started, until stopped
+     */
+    public boolean isStarted(){
+        return mStarted;
+    }
+
+    @Override
+    public void onLocationChanged(Location location) {
+        mPending = location;
+        if(!mQueryRunning){
+            query();
+        }
+    }
+
+    /**
+     * Query the cities nearest the pending location
+     */
+    private void query(){
+        final Location location = mPending;
+        mPending = null;
+        mQueryRunning = true;
+        final SpatialIndex.Result result = mResult;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mIndex.nearest(location.getLatitude(), location.getLongitude(), mCount, result);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mQueryRunning = false;
+                        if(!mStarted){
+                            return;
+                        }
+                        // Copied before the next query can write to the result
+                        int[] cities = Arrays.copyOf(result.getCities(), result.size());
+                        mCallback.onNearby(DrawerRows.forNearby(mIndex.getStore(), cities,
+                                cities.length));
+                        if(mPending != null){
+                            query();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void onStatusChanged(String provider, int status, Bundle extras) {
+    }
+
+    @Override
+    public void onProviderEnabled(String provider) {
+    }
+
+    @Override
+    public void onProviderDisabled(String provider) {
+    }
+}
@@ -0,0 +1,103 @@
+package com.caci.recycledrawer;
+
+import android.view.View;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.caci.recycledrawer.data.LocationStore;
+
+import java.nio.CharBuffer;
+
+/**
+ * View holder for any row in the drawer.  Every row layout shows a single name, so one holder
+ * type covers headers and items and adapters can bind it without instanceof checks or casts
+ * -----------------------------------------------------------------------------------------
+ */
+public class RowViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener{
+
+    /**
+     * Name shown in the row
+     */
+    TextView name;
+
+    /**
+     * Chars of the name shown.  TextView.setText(char[], int, int) keeps the array it's given
+     * instead of copying it, so the holder gives it one that nothing else writes to
+     */
+    private char[] mNameChars = new char[32];
+
+    /**
+     * Click listener for the row, null if the row isn't clickable
+     */
+    private RecyclerViewClickListener mListener;
+
+    /**
+     * Constructor
+     * @param itemView given view
+     * @param nameId id of the TextView that shows the name
+     * @param listener listener for clicking the row, or null
+     */
+    public RowViewHolder(@NonNull View itemView, int nameId, RecyclerViewClickListener listener) {
+        super(itemView);
+        name = (TextView) itemView.findViewById(nameId);
+        mListener = listener;
+        if(listener != null){
+            itemView.setOnClickListener(this);
+        }
+    }
+
+    /**
+     * Click listener
+     * @param view - clicked view
+     */
+    @Override
+    public void onClick(View view) {
+        int adapterPosition = getAdapterPosition();
+        mListener.onClick(adapterPosition);
+    }
+
+    /**
+     * Show a city name from a store's name pool, without creating a String
+     * @param pool name pool
+     * @param offset start of the name in the pool
+     * @param length length of the name
+     */
+    public void bindName(CharBuffer pool, int offset, int length){
+        growNameChars(length);
+        LocationStore.getChars(pool, offset, length, mNameChars, 0);
+        name.setText(mNameChars, 0, length);
+    }
+
+    /**
+     * Show a city name from a CityPage's name pool.  The page is reused for other names once
+     * it's evicted, so the name is copied rather than shown from the page's array
+     * @param pool name pool
+     * @param offset start of the name in the pool
+     * @param length length of the name
+     */
+    public void bindName(char[] pool, int offset, int length){
+        growNameChars(length);
+        System.arraycopy(pool, offset, mNameChars, 0, length);
+        name.setText(mNameChars, 0, length);
+    }
+
+    private void growNameChars(int length){
+        if(length > mNameChars.length){
+            mNameChars = new char[Math.max(length, mNameChars.length * 2)];
+        }
+    }
+
+    /**
+     * Getters and setters
+     * @return
+     */
+    public TextView getName() {
+        return name;
+    }
+
+    public void setName(TextView name) {
+        this.name = name;
+    }
+}
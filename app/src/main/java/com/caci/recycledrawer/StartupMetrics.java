@@ -0,0 +1,241 @@
+package com.caci.recycledrawer;
+
+import android.os.Debug;
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Times the phases of startup and of loading the location data, for comparing cold start
+ * breakdowns across builds.  Each phase is a Section:
+ *   - It's a Trace section, so it shows up by name in systrace and Perfetto captures
+ *   - When it ends its wall time, the CPU time of the thread it ran on and the bytes allocated
+ *     while it ran are kept in memory, in the order phases ended, until clear()
+ * Allocated bytes are the runtime's count for the whole process, so they include anything other
+ * threads allocated at the same time.  Sections nest, and must end on the thread they began on
+ * in the reverse order they began.  The timings are read with getTimings, or written to the log
+ * with log().
+ */
+public class StartupMetrics {
+
+    private static final String TAG = "StartupMetrics";
+
+    /**
+     * ART's count of bytes allocated since the process started, available from API 23
+     */
+    private static final String ALLOCATED_BYTES_STAT = "art.gc.bytes-allocated";
+
+    private static final StartupMetrics sInstance = new StartupMetrics();
+
+    /**
+     * Time the registry was created, which is close to when the process started.  Phases'
+     * start times are relative to it
+     */
+    private final long mCreatedNanos = System.nanoTime();
+
+    /**
+     * Timings of the phases that ended, guarded by itself
+     */
+    private final List<Timing> mTimings = new ArrayList<>();
+
+    /**
+     * How many sections are open on each thread, to indent nested phases in the log
+     */
+    private final ThreadLocal<int[]> mOpenSections = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    /**
+     * Get the process's registry
+     * @return the registry
+     */
+    public static StartupMetrics getInstance(){
+        return sInstance;
+    }
+
+    /**
+     * Begin a phase on this thread
+     * @param name - phase name, shown in traces and the log
+     * @return the section, end it when the phase is done
+     */
+    public Section begin(String name){
+        Trace.beginSection(name);
+        return new Section(name, mOpenSections.get()[0]++);
+    }
+
+    /**
+     * Get the timings of every phase that ended
+     * @return copy of the timings, in the order the phases ended
+     */
+    public List<Timing> getTimings(){
+        synchronized(mTimings){
+            return new ArrayList<>(mTimings);
+        }
+    }
+
+    /**
+     * Get the timing of the last phase that ended with a name
+     * @param name - phase name
+     * @return the timing, or null if no phase with that name ended
+     */
+    public Timing getTiming(String name){
+        synchronized(mTimings){
+            for(int i=mTimings.size() - 1; i>=0; i--){
+                if(mTimings.get(i).getName().equals(name)){
+                    return mTimings.get(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Forget every timing
+     */
+    public void clear(){
+        synchronized(mTimings){
+            mTimings.clear();
+        }
+    }
+
+    /**
+     * Write every timing to the debug log, one phase per line
+     */
+    public void log(){
+        for(Timing timing : getTimings()){
+            Log.d(TAG, timing.toString());
+        }
+    }
+
+    private static long getAllocatedBytes(){
+        String bytes = Debug.getRuntimeStat(ALLOCATED_BYTES_STAT);
+        try {
+            return bytes != null ? Long.parseLong(bytes) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * -----------------------------------------------
+     * A phase that's running, end it when it's done
+     * -----------------------------------------------
+     */
+    public class Section {
+
+        private final String mName;
+        private final int mDepth;
+        private final long mStartNanos;
+        private final long mStartCpuNanos;
+        private final long mStartBytes;
+
+        private Section(String name, int depth){
+            mName = name;
+            mDepth = depth;
+            mStartBytes = getAllocatedBytes();
+            mStartCpuNanos = Debug.threadCpuTimeNanos();
+            mStartNanos = System.nanoTime();
+        }
+
+        /**
+         * End the phase and keep its timing.  Call on the thread that began it
+         */
+        public void end(){
+            long wallNanos = System.nanoTime() - mStartNanos;
+            long cpuNanos = Debug.threadCpuTimeNanos() - mStartCpuNanos;
+            long bytes = getAllocatedBytes() - mStartBytes;
+            Trace.endSection();
+            mOpenSections.get()[0]--;
+
+            Timing timing = new Timing(mName, Thread.currentThread().getName(), mDepth,
+                    mStartNanos - mCreatedNanos, wallNanos, cpuNanos,
+                    mStartBytes < 0 ? -1 : bytes);
+            synchronized(mTimings){
+                mTimings.add(timing);
+            }
+        }
+    }
+
+    /**
+     * ---------------------------------
+     * How long a finished phase took
+     * ---------------------------------
+     */
+    public static class Timing {
+
+        private final String mName;
+        private final String mThreadName;
+        private final int mDepth;
+        private final long mStartNanos;
+        private final long mWallNanos;
+        private final long mCpuNanos;
+        private final long mAllocatedBytes;
+
+        Timing(String name, String threadName, int depth, long startNanos, long wallNanos,
+               long cpuNanos, long allocatedBytes){
+            mName = name;
+            mThreadName = threadName;
+            mDepth = depth;
+            mStartNanos = startNanos;
+            mWallNanos = wallNanos;
+            mCpuNanos = cpuNanos;
+            mAllocatedBytes = allocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder line = new StringBuilder();
+            for(int i=0; i<mDepth; i++){
+                line.append("  ");
+            }
+            line.append(String.format(Locale.US, "%s [%s] at %.1fms: wall %.2fms, cpu %.2fms",
+                    mName, mThreadName, mStartNanos / 1e6, mWallNanos / 1e6, mCpuNanos / 1e6));
+            if(mAllocatedBytes >= 0){
+                line.append(", allocated ").append(mAllocatedBytes / 1024).append("KB");
+            }
+            return line.toString();
+        }
+
+        /**
+         * Getters
+         * @return
+         */
+        public String getName() {
+            return mName;
+        }
+
+        public String getThreadName() {
+            return mThreadName;
+        }
+
+        public int getDepth() {
+            return mDepth;
+        }
+
+        public long getStartNanos() {
+            return mStartNanos;
+        }
+
+        public long getWallNanos() {
+            return mWallNanos;
+        }
+
+        public long getCpuNanos() {
+            return mCpuNanos;
+        }
+
+        /**
+         * @return bytes allocated in the process during the phase, or -1 if the runtime doesn't
+         * count them
+         */
+        public long getAllocatedBytes() {
+            return mAllocatedBytes;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.caci.recycledrawer;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.SparseIntArray;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Pre-inflates ViewHolders for the drawer while the main thread is idle, so the first list
+ * shown after a state is clicked doesn't stutter while rows are inflated.
+ *   - Layouts are inflated off the main thread with AsyncLayoutInflater
+ *   - The finished holders are put in a RecycledViewPool, where the RecyclerView picks them up
+ *     instead of calling onCreateViewHolder's inflate
+ *   - Each view type's pool size is the configured target, raised to cover the number of rows
+ *     that fit on screen once the list has been laid out
+ * Inflations that still happen on the main thread are counted, to see how well warming works,
+ * see getMainThreadInflations and getAsyncInflations.
+ */
+public class ViewHolderWarmer {
+
+    /**
+     * Rows kept in the pool beyond what fits on screen, for rows half scrolled into view
+     */
+    private static final int VIEWPORT_EXTRA = 2;
+
+    /**
+     * RecyclerView the holders are warmed for
+     */
+    private RecyclerView mRecycler;
+
+    /**
+     * Adapter that creates the holders
+     */
+    private LocationAdapter mAdapter;
+
+    /**
+     * Pool the warmed holders are kept in.  Can be shared with other RecyclerViews
+     */
+    private RecyclerView.RecycledViewPool mPool = new RecyclerView.RecycledViewPool();
+
+    /**
+     * Inflates layouts on a background thread
+     */
+    private AsyncLayoutInflater mInflater;
+
+    /**
+     * Number of holders to keep ready, by view type
+     */
+    private SparseIntArray mTargets = new SparseIntArray();
+
+    /**
+     * Number of inflations started but not finished, by view type
+     */
+    private SparseIntArray mPending = new SparseIntArray();
+
+    /**
+     * A view inflated in the background, handed to the adapter while it creates a holder for it
+     */
+    private View mWarmView;
+    private int mWarmViewType;
+
+    /**
+     * Inflation counters
+     */
+    private int mMainThreadInflations;
+    private int mAsyncInflations;
+
+    /**
+     * Set once the warmer is cancelled, inflations that finish afterwards are dropped
+     */
+    private boolean mCancelled;
+
+    /**
+     * Constructor.  Gives the RecyclerView the warmer's pool
+     * @param context - context to inflate with
+     * @param recycler - RecyclerView to warm holders for
+     * @param adapter - adapter that creates the holders
+     */
+    public ViewHolderWarmer(Context context, RecyclerView recycler, LocationAdapter adapter){
+        mRecycler = recycler;
+        mAdapter = adapter;
+        mInflater = new AsyncLayoutInflater(context);
+        mRecycler.setRecycledViewPool(mPool);
+        mAdapter.setmWarmer(this);
+    }
+
+    /**
+     * Set how many holders of a view type to keep ready
+     * @param viewType - view type from DrawerRows
+     * @param count - number of holders
+     */
+    public void setTarget(int viewType, int count){
+        mTargets.put(viewType, count);
+        mPool.setMaxRecycledViews(viewType, count);
+    }
+
+    /**
+     * Warm up the holders the next time the main thread is idle.  Call again after the rows
+     * change so the pool is sized for what's on screen
+     */
+    public void warmWhenIdle(){
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                if(!mCancelled){
+                    sizePoolFromViewport();
+                    warm();
+                }
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Stop warming.  Call when the activity is destroyed
+     */
+    public void cancel(){
+        mCancelled = true;
+    }
+
+    /**
+     * Raise the target for each view type on screen to the number of its rows that fit on screen
+     */
+    private void sizePoolFromViewport(){
+        SparseIntArray visible = new SparseIntArray();
+        for(int i=0; i<mRecycler.getChildCount(); i++){
+            RecyclerView.ViewHolder holder = mRecycler.getChildViewHolder(mRecycler.getChildAt(i));
+            int viewType = holder.getItemViewType();
+            visible.put(viewType, visible.get(viewType) + 1);
+        }
+        for(int i=0; i<visible.size(); i++){
+            int viewType = visible.keyAt(i);
+            int count = visible.valueAt(i) + VIEWPORT_EXTRA;
+            if(count > mTargets.get(viewType)){
+                setTarget(viewType, count);
+            }
+        }
+    }
+
+    /**
+     * Start background inflations for every view type below its target
+     */
+    private void warm(){
+        for(int i=0; i<mTargets.size(); i++){
+            final int viewType = mTargets.keyAt(i);
+            int needed = mTargets.valueAt(i) - mPool.getRecycledViewCount(viewType) - mPending.get(viewType);
+            for(int j=0; j<needed; j++){
+                mPending.put(viewType, mPending.get(viewType) + 1);
+                mInflater.inflate(LocationAdapter.getLayout(viewType), mRecycler,
+                        new AsyncLayoutInflater.OnInflateFinishedListener() {
+                            @Override
+                            public void onInflateFinished(@NonNull View view, int resid, ViewGroup parent) {
+                                mPending.put(viewType, mPending.get(viewType) - 1);
+                                addToPool(view, viewType);
+                            }
+                        });
+            }
+        }
+    }
+
+    /**
+     * Wrap a view inflated in the background in a holder and put it in the pool.  Runs on the
+     * main thread
+     * @param view - inflated view
+     * @param viewType - view type
+     */
+    private void addToPool(View view, int viewType){
+        if(mCancelled || mPool.getRecycledViewCount(viewType) >= mTargets.get(viewType)){
+            return;
+        }
+        // createViewHolder tags the holder with its view type, the adapter takes the view
+        // back through takeWarmView instead of inflating one
+        mWarmView = view;
+        mWarmViewType = viewType;
+        RecyclerView.ViewHolder holder = mAdapter.createViewHolder(mRecycler, viewType);
+        mWarmView = null;
+        mPool.putRecycledView(holder);
+        mAsyncInflations++;
+    }
+
+    /**
+     * Called by the adapter when it creates a holder
+     * @param viewType - view type of the holder
+     * @return the view to use for the holder, or null if the adapter has to inflate one on the
+     * main thread
+     */
+    View takeWarmView(int viewType){
+        if(mWarmView != null && mWarmViewType == viewType){
+            View view = mWarmView;
+            mWarmView = null;
+            return view;
+        }
+        mMainThreadInflations++;
+        return null;
+    }
+
+    /**
+     * Getters
+     * @return
+     */
+    public RecyclerView.RecycledViewPool getPool() {
+        return mPool;
+    }
+
+    public int getMainThreadInflations() {
+        return mMainThreadInflations;
+    }
+
+    public int getAsyncInflations() {
+        return mAsyncInflations;
+    }
+}
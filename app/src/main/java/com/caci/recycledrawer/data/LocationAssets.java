@@ -0,0 +1,82 @@
+package com.caci.recycledrawer.data;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The Android side of the location data files: getting the prebuilt index out of the APK and
+ * telling when the assets could have changed.  The data classes themselves don't depend on
+ * Android, so they can run on a plain JVM.
+ */
+public final class LocationAssets {
+
+    private LocationAssets(){
+    }
+
+    /**
+     * Map the index from the app's files dir, copying it out of the APK first if this is the
+     * first launch since install or update.  Assets are compressed in the APK, so they can't be
+     * mapped in place
+     * @param context context for the assets and files dir
+     * @return the mapped index
+     * @throws IOException if the index is missing from the assets or can't be read
+     */
+    public static LocationIndex openIndex(Context context) throws IOException {
+        File file = new File(context.getFilesDir(), LocationIndex.ASSET_NAME);
+        if(!file.exists() || file.lastModified() < getLastUpdateTime(context)){
+            copyAsset(context, LocationIndex.ASSET_NAME, file);
+        }
+        return LocationIndex.map(file);
+    }
+
+    /**
+     * Get the time the app was last installed or updated, which is the last time the assets
+     * could have changed
+     * @param context context
+     * @return time in millis
+     */
+    public static long getLastUpdateTime(Context context){
+        try {
+            return context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Copy a file out of the assets dir.  Written to a temp file first so a failed copy never
+     * leaves a partial file behind
+     * @param context context
+     * @param assetName name of the asset
+     * @param file destination
+     */
+    private static void copyAsset(Context context, String assetName, File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        InputStream in = context.getAssets().open(assetName);
+        try {
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while((read = in.read(buffer)) != -1){
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+        if(!temp.renameTo(file)){
+            temp.delete();
+            throw new IOException("Unable to write " + file);
+        }
+    }
+}
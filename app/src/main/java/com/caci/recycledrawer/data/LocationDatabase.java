@@ -0,0 +1,322 @@
+package com.caci.recycledrawer.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Optional SQLite copy of assets/cities.json, so launches after the first don't parse the json.
+ *   - cities: one row per city, with an index on (state, city) that serves the state queries.
+ *     It isn't unique, a state can have two cities with the same name
+ *   - cities_fts: an FTS4 index of the cities' search keys, folded by SearchKeys at import.
+ *     Triggers keep it in step with cities, inside the import's transaction
+ *   - meta: the checksum of the json that was imported and the app update it was checked at
+ * sync imports the json on first launch and after an app update that changed it.  An import
+ * runs in one transaction with precompiled statements: changed cities are updated in place,
+ * new ones inserted and ones no longer in the json deleted, so re-importing only touches what
+ * changed.  Open it off the main thread, everything here does disk IO.
+ */
+public class LocationDatabase extends SQLiteOpenHelper {
+
+    /**
+     * File name and schema version
+     */
+    private static final String DATABASE_NAME = "locations.db";
+    private static final int SCHEMA_VERSION = 3;
+
+    /**
+     * Asset imported by sync
+     */
+    private static final String ASSET_NAME = "cities.json";
+
+    /**
+     * Keys in the meta table
+     */
+    private static final String META_CHECKSUM = "asset_checksum";
+    private static final String META_UPDATE_TIME = "app_update_time";
+
+    /**
+     * Columns read into a LocationStore or a Location, in the order they're read
+     */
+    private static final String CITY_COLUMNS =
+            "state, city, latitude, longitude, population, rank, growth";
+
+    /**
+     * Constructor
+     * @param context context, only the application context is kept
+     */
+    public LocationDatabase(Context context){
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * Constructor
+     * @param context context, only the application context is kept
+     * @param name database file name, or null for an in-memory database
+     */
+    public LocationDatabase(Context context, String name){
+        super(context.getApplicationContext(), name, null, SCHEMA_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE meta (key TEXT PRIMARY KEY, value INTEGER NOT NULL)");
+        // import_id marks the import that last saw the city, the ones an import didn't see are
+        // deleted at the end of it
+        db.execSQL("CREATE TABLE cities ("
+                + "_id INTEGER PRIMARY KEY, "
+                + "state TEXT NOT NULL, "
+                + "city TEXT NOT NULL, "
+                + "latitude REAL NOT NULL, "
+                + "longitude REAL NOT NULL, "
+                + "population INTEGER NOT NULL, "
+                + "rank INTEGER NOT NULL, "
+                + "growth INTEGER NOT NULL, "
+                + "search_key TEXT NOT NULL, "
+                + "import_id INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX cities_state_city ON cities (state, city)");
+
+        // The keys are already folded, so the default tokenizer only has to split them into words
+        db.execSQL("CREATE VIRTUAL TABLE cities_fts USING fts4(search_key, content=\"cities\")");
+        // An external content table reads the old key from cities to remove it, so it's removed
+        // before the row changes.  Updates that leave the key alone don't touch the index
+        db.execSQL("CREATE TRIGGER cities_fts_bu BEFORE UPDATE OF search_key ON cities "
+                + "WHEN old.search_key != new.search_key BEGIN "
+                + "DELETE FROM cities_fts WHERE docid = old._id; END");
+        db.execSQL("CREATE TRIGGER cities_fts_bd BEFORE DELETE ON cities BEGIN "
+                + "DELETE FROM cities_fts WHERE docid = old._id; END");
+        db.execSQL("CREATE TRIGGER cities_fts_au AFTER UPDATE OF search_key ON cities "
+                + "WHEN old.search_key != new.search_key BEGIN "
+                + "INSERT INTO cities_fts (docid, search_key) VALUES (new._id, new.search_key); END");
+        db.execSQL("CREATE TRIGGER cities_fts_ai AFTER INSERT ON cities BEGIN "
+                + "INSERT INTO cities_fts (docid, search_key) VALUES (new._id, new.search_key); END");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Everything here can be imported again from the asset, the triggers go with their table
+        db.execSQL("DROP TABLE IF EXISTS cities_fts");
+        db.execSQL("DROP TABLE IF EXISTS cities");
+        db.execSQL("DROP TABLE IF EXISTS meta");
+        onCreate(db);
+    }
+
+    /**
+     * Bring the database up to date with the json in the assets.  The json is only read when the
+     * app has been installed or updated since the last check, and only imported if its checksum
+     * changed
+     * @param context context for the assets
+     * @return true if the json was imported
+     * @throws IOException if the asset can't be read or parsed
+     */
+    public boolean sync(Context context) throws IOException {
+        long updateTime = LocationAssets.getLastUpdateTime(context);
+        if(getMeta(META_UPDATE_TIME) == updateTime){
+            return false;
+        }
+
+        long checksum = LocationLoader.checksum(context.getAssets().open(ASSET_NAME));
+        boolean imported = false;
+        if(getMeta(META_CHECKSUM) != checksum){
+            importLocations(context.getAssets().open(ASSET_NAME), checksum);
+            imported = true;
+        }
+        putMeta(getWritableDatabase(), META_UPDATE_TIME, updateTime);
+        return imported;
+    }
+
+    /**
+     * Import a json array of cities, in one transaction.  Cities are matched by state and name:
+     * matches are updated, the rest are inserted, and cities missing from the json are deleted.
+     * Each json city updates at most one row, so cities sharing a name in a state stay separate
+     * @param json stream of the json array, closed when the import finishes
+     * @param checksum checksum of the json, recorded once the import succeeds
+     * @return number of cities imported
+     * @throws IOException if the stream can't be read or parsed.  The database is left as it was
+     */
+    public int importLocations(InputStream json, long checksum) throws IOException {
+        final SQLiteDatabase db = getWritableDatabase();
+        final long importId = nextImportId(db);
+        // Only rows this import hasn't updated yet can match
+        final SQLiteStatement update = db.compileStatement("UPDATE cities SET latitude = ?, "
+                + "longitude = ?, population = ?, rank = ?, growth = ?, import_id = ?, "
+                + "search_key = ? WHERE _id = (SELECT _id FROM cities WHERE state = ? AND city = ? "
+                + "AND import_id != ? ORDER BY _id LIMIT 1)");
+        final SQLiteStatement insert = db.compileStatement("INSERT INTO cities (latitude, "
+                + "longitude, population, rank, growth, import_id, search_key, state, city) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        int count;
+        db.beginTransaction();
+        try {
+            count = new LocationLoader(json).load(new LocationLoader.LocationListener() {
+                @Override
+                public void onLocation(Location loc) {
+                    String key = SearchKeys.fold(loc.getCity());
+                    bindCity(update, loc, key, importId);
+                    update.bindLong(10, importId);
+                    if(update.executeUpdateDelete() == 0){
+                        bindCity(insert, loc, key, importId);
+                        insert.executeInsert();
+                    }
+                }
+            });
+            db.delete("cities", "import_id != ?", new String[]{Long.toString(importId)});
+            putMeta(db, META_CHECKSUM, checksum);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            update.close();
+            insert.close();
+        }
+        return count;
+    }
+
+    /**
+     * Get an import id that no city has yet
+     */
+    private static long nextImportId(SQLiteDatabase db){
+        Cursor cursor = db.rawQuery("SELECT IFNULL(MAX(import_id), 0) + 1 FROM cities", null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Bind a city to the update or insert statement, which take their first arguments in the same
+     * order
+     */
+    private static void bindCity(SQLiteStatement statement, Location loc, String key,
+                                 long importId){
+        statement.bindDouble(1, loc.getLat());
+        statement.bindDouble(2, loc.getLon());
+        statement.bindLong(3, loc.getPopulation());
+        statement.bindLong(4, loc.getRank());
+        statement.bindLong(5, loc.getGrowth());
+        statement.bindLong(6, importId);
+        statement.bindString(7, key);
+        statement.bindString(8, loc.getState());
+        statement.bindString(9, loc.getCity());
+    }
+
+    /**
+     * Get every state name, from the state index
+     * @return state names in the database's order
+     */
+    public String[] getStateNames(){
+        Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT DISTINCT state FROM cities ORDER BY state", null);
+        try {
+            String[] names = new String[cursor.getCount()];
+            for(int i=0; cursor.moveToNext(); i++){
+                names[i] = cursor.getString(0);
+            }
+            return names;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Get a state's cities, from the state index
+     * @param state state name
+     * @return the state's cities in the database's name order
+     */
+    public List<Location> getCities(String state){
+        return queryCities("SELECT " + CITY_COLUMNS + " FROM cities WHERE state = ? ORDER BY city",
+                new String[]{state});
+    }
+
+    /**
+     * Find the cities with a word starting with each word of the query, from the full text index
+     * @param query text typed by the user
+     * @param limit most cities to return
+     * @return matching cities, most populous first
+     */
+    public List<Location> searchCities(String query, int limit){
+        // Folded like the keys, which leaves words of letters and digits split by single spaces.
+        // Each word is a quoted prefix, "word*", so nothing in it is read as FTS syntax
+        String key = SearchKeys.fold(query);
+        if(key.isEmpty()){
+            return new ArrayList<>();
+        }
+        StringBuilder match = new StringBuilder();
+        for(String word : key.split(" ")){
+            if(match.length() > 0){
+                match.append(' ');
+            }
+            match.append('"').append(word).append("*\"");
+        }
+        return queryCities("SELECT " + CITY_COLUMNS + " FROM cities WHERE _id IN "
+                + "(SELECT docid FROM cities_fts WHERE cities_fts MATCH ?) "
+                + "ORDER BY population DESC LIMIT " + limit, new String[]{match.toString()});
+    }
+
+    /**
+     * Read every city into a LocationStore, without parsing any json
+     * @param collator collator to sort the names with
+     * @return the store
+     */
+    public LocationStore loadStore(LocationCollator collator){
+        Cursor cursor = getReadableDatabase().rawQuery("SELECT " + CITY_COLUMNS + " FROM cities", null);
+        try {
+            LocationStore.Builder builder = new LocationStore.Builder(cursor.getCount());
+            while(cursor.moveToNext()){
+                builder.add(cursor.getString(0), cursor.getString(1), cursor.getDouble(2),
+                        cursor.getDouble(3), cursor.getInt(4), cursor.getInt(5), cursor.getInt(6));
+            }
+            return builder.build(null, collator);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Run a query for CITY_COLUMNS and read the rows into Locations
+     */
+    private List<Location> queryCities(String sql, String[] args){
+        Cursor cursor = getReadableDatabase().rawQuery(sql, args);
+        try {
+            List<Location> cities = new ArrayList<>(cursor.getCount());
+            while(cursor.moveToNext()){
+                Location loc = new Location(cursor.getString(0), cursor.getString(1));
+                loc.setLat(cursor.getDouble(2));
+                loc.setLon(cursor.getDouble(3));
+                loc.setPopulation(cursor.getInt(4));
+                loc.setRank(cursor.getInt(5));
+                loc.setGrowth(cursor.getInt(6));
+                cities.add(loc);
+            }
+            return cities;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Meta getter and setter
+     * @return the value, or -1 if it isn't set
+     */
+    private long getMeta(String key){
+        Cursor cursor = getReadableDatabase().rawQuery("SELECT value FROM meta WHERE key = ?",
+                new String[]{key});
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void putMeta(SQLiteDatabase db, String key, long value){
+        db.execSQL("INSERT OR REPLACE INTO meta (key, value) VALUES (?, ?)", new Object[]{key, value});
+    }
+}
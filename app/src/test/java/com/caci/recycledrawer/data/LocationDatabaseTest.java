@@ -0,0 +1,200 @@
+package com.caci.recycledrawer.data;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class LocationDatabaseTest {
+
+    private static final LocationCollator COLLATOR = new LocationCollator(Locale.US);
+
+    private LocationDatabase mDatabase;
+
+    @Before
+    public void setUp(){
+        mDatabase = new LocationDatabase(RuntimeEnvironment.application, null);
+    }
+
+    @After
+    public void tearDown(){
+        mDatabase.close();
+    }
+
+    @Test
+    public void syncImportsTheAssetOnce() throws IOException {
+        assertTrue(mDatabase.sync(RuntimeEnvironment.application));
+        assertFalse(mDatabase.sync(RuntimeEnvironment.application));
+
+        LocationStore expected = loadAsset();
+        String[] stateNames = expected.getStateNames().clone();
+        Arrays.sort(stateNames);
+        assertArrayEquals(stateNames, mDatabase.getStateNames());
+    }
+
+    @Test
+    public void loadStoreMatchesTheJson() throws IOException {
+        mDatabase.sync(RuntimeEnvironment.application);
+
+        LocationStore expected = loadAsset();
+        LocationStore store = mDatabase.loadStore(COLLATOR);
+        assertArrayEquals(expected.getStateNames(), store.getStateNames());
+        assertEquals(expected.getCityCount(), store.getCityCount());
+        for(int city=0; city<expected.getCityCount(); city++){
+            assertEquals(expected.getCityName(city), store.getCityName(city));
+            assertEquals(expected.getStateId(city), store.getStateId(city));
+            assertEquals(expected.getLatitude(city), store.getLatitude(city), 0);
+            assertEquals(expected.getLongitude(city), store.getLongitude(city), 0);
+            assertEquals(expected.getPopulation(city), store.getPopulation(city));
+            assertEquals(expected.getRank(city), store.getRank(city));
+            assertEquals(expected.getGrowth(city), store.getGrowth(city));
+        }
+    }
+
+    @Test
+    public void keepsCitiesSharingANameInAState() throws IOException {
+        String json = "[" + city("Ohio", "Springfield", 59357, 1)
+                + "," + city("Ohio", "Springfield", 1000, 2)
+                + "," + city("Ohio", "Columbus", 822553, 3) + "]";
+        assertEquals(3, mDatabase.importLocations(stream(json), 1));
+        assertEquals(3, mDatabase.importLocations(stream(json), 1));
+
+        LocationStore store = mDatabase.loadStore(COLLATOR);
+        assertEquals(3, store.getCityCount());
+        int populations = 0;
+        for(int city=0; city<store.getCityCount(); city++){
+            if("Springfield".equals(store.getCityName(city))){
+                populations += store.getPopulation(city);
+            }
+        }
+        assertEquals(59357 + 1000, populations);
+    }
+
+    @Test
+    public void reimportUpdatesAndDeletes() throws IOException {
+        mDatabase.importLocations(stream("[" + city("Ohio", "Columbus", 800000, 1)
+                + "," + city("Ohio", "Dayton", 141527, 2) + "]"), 1);
+        mDatabase.importLocations(stream("[" + city("Ohio", "Columbus", 822553, 1)
+                + "," + city("Maine", "Portland", 66318, 2) + "]"), 2);
+
+        LocationStore store = mDatabase.loadStore(COLLATOR);
+        assertArrayEquals(new String[]{"Maine", "Ohio"}, mDatabase.getStateNames());
+        assertEquals(2, store.getCityCount());
+        LocationStore.CitySlice ohio = store.getCitiesByState("Ohio");
+        assertEquals(1, ohio.size());
+        assertEquals("Columbus", store.getCityName(ohio.getCity(0)));
+        assertEquals(822553, store.getPopulation(ohio.getCity(0)));
+    }
+
+    @Test
+    public void failedImportLeavesTheDatabaseAsItWas() throws IOException {
+        mDatabase.importLocations(stream("[" + city("Ohio", "Columbus", 822553, 1) + "]"), 1);
+        try {
+            mDatabase.importLocations(stream("[" + city("Maine", "Portland", 66318, 2) + ",{"), 2);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // The truncated json rolls the import back
+        }
+
+        assertArrayEquals(new String[]{"Ohio"}, mDatabase.getStateNames());
+        assertEquals(1, mDatabase.loadStore(COLLATOR).getCityCount());
+        assertEquals(0, mDatabase.searchCities("portland", 10).size());
+    }
+
+    @Test
+    public void getCitiesReadsOneState() throws IOException {
+        mDatabase.importLocations(stream("[" + city("Ohio", "Springfield", 59357, 1)
+                + "," + city("Illinois", "Springfield", 116250, 2)
+                + "," + city("Ohio", "Columbus", 822553, 3)
+                + "," + city("Ohio", "Springfield", 1000, 4) + "]"), 1);
+
+        List<Location> ohio = mDatabase.getCities("Ohio");
+        assertEquals(3, ohio.size());
+        assertEquals("Columbus", ohio.get(0).getCity());
+        assertEquals("Springfield", ohio.get(1).getCity());
+        assertEquals("Springfield", ohio.get(2).getCity());
+        for(Location loc : ohio){
+            assertEquals("Ohio", loc.getState());
+        }
+        assertEquals(116250, mDatabase.getCities("Illinois").get(0).getPopulation());
+        assertEquals(0, mDatabase.getCities("Maine").size());
+    }
+
+    @Test
+    public void searchCitiesMatchesWordPrefixes() throws IOException {
+        mDatabase.importLocations(stream("[" + city("California", "San José", 998537, 1)
+                + "," + city("California", "Santa Ana", 334227, 2)
+                + "," + city("Idaho", "Coeur d'Alene", 46402, 3)
+                + "," + city("Texas", "San Antonio", 1409019, 4) + "]"), 1);
+
+        assertEquals(Arrays.asList("San Antonio", "San José", "Santa Ana"),
+                names(mDatabase.searchCities("san", 10)));
+        // Accents, case and punctuation are folded like the stored keys
+        assertEquals(Arrays.asList("San José"), names(mDatabase.searchCities("SAN JOSE", 10)));
+        assertEquals(Arrays.asList("San José"), names(mDatabase.searchCities("jos", 10)));
+        assertEquals(Arrays.asList("Coeur d'Alene"),
+                names(mDatabase.searchCities("coeur d'al", 10)));
+        assertEquals(Arrays.asList("San Antonio"), names(mDatabase.searchCities("san", 1)));
+        // FTS syntax in the query is only text
+        assertEquals(0, mDatabase.searchCities("san OR \"ana", 10).size());
+        assertEquals(0, mDatabase.searchCities(" '- ", 10).size());
+    }
+
+    @Test
+    public void searchFollowsReimports() throws IOException {
+        mDatabase.importLocations(stream("[" + city("Ohio", "Dayton", 141527, 1)
+                + "," + city("Ohio", "Dover", 12826, 2) + "]"), 1);
+        mDatabase.importLocations(stream("[" + city("Ohio", "Dover", 12900, 2)
+                + "," + city("Ohio", "Delaware", 38643, 3) + "]"), 2);
+
+        assertEquals(Arrays.asList("Delaware", "Dover"), names(mDatabase.searchCities("d", 10)));
+        assertEquals(12900, mDatabase.searchCities("dover", 10).get(0).getPopulation());
+        assertEquals(0, mDatabase.searchCities("dayton", 10).size());
+    }
+
+    private static LocationStore loadAsset() throws IOException {
+        final LocationStore.Builder builder = new LocationStore.Builder();
+        InputStream json = RuntimeEnvironment.application.getAssets().open("cities.json");
+        new LocationLoader(json).load(new LocationLoader.LocationListener() {
+            @Override
+            public void onLocation(Location location) {
+                builder.add(location);
+            }
+        });
+        return builder.build(null, COLLATOR);
+    }
+
+    private static List<String> names(List<Location> cities){
+        String[] names = new String[cities.size()];
+        for(int i=0; i<names.length; i++){
+            names[i] = cities.get(i).getCity();
+        }
+        return Arrays.asList(names);
+    }
+
+    private static String city(String state, String city, int population, int rank){
+        return "{\"city\": \"" + city + "\", \"growth_from_2000_to_2013\": \"1.0%\", "
+                + "\"latitude\": 40.0, \"longitude\": -83.0, \"population\": \"" + population
+                + "\", \"rank\": \"" + rank + "\", \"state\": \"" + state + "\"}";
+    }
+
+    private static InputStream stream(String json) throws IOException {
+        return new ByteArrayInputStream(json.getBytes("UTF-8"));
+    }
+}
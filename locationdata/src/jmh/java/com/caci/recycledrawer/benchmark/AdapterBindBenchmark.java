@@ -0,0 +1,105 @@
+package com.caci.recycledrawer.benchmark;
+
+import com.caci.recycledrawer.data.DrawerRows;
+import com.caci.recycledrawer.data.LocationStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What LocationAdapter does for every row that scrolls into view, without the views:
+ * getItemViewType, then onBindViewHolder copying the row's name into the TextView.  The text
+ * buffer stands in for the holder's name buffer that TextView.setText(char[], int, int) is
+ * given.  Each call
+ * binds every row of a list once:
+ *   - bindStates: the state list
+ *   - bindCities: the biggest state's cities
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class AdapterBindBenchmark {
+
+    private DrawerRows mStates;
+    private DrawerRows mCities;
+    private char[] mText = new char[256];
+
+    @Setup
+    public void setUp(Dataset data){
+        LocationStore store = data.store;
+        mStates = DrawerRows.forStates(store.getStateNames());
+        int biggest = 0;
+        for(int state=1; state<store.getStateCount(); state++){
+            if(store.getCities(state).size() > store.getCities(biggest).size()){
+                biggest = state;
+            }
+        }
+        mCities = DrawerRows.forCities(store.getCities(biggest));
+    }
+
+    @Benchmark
+    public void bindStates(Blackhole blackhole){
+        bindAll(mStates, blackhole);
+    }
+
+    @Benchmark
+    public void bindCities(Blackhole blackhole){
+        bindAll(mCities, blackhole);
+    }
+
+    private void bindAll(DrawerRows rows, Blackhole blackhole){
+        for(int position=0; position<rows.size(); position++){
+            blackhole.consume(getItemViewType(rows, position));
+            bind(rows, position, blackhole);
+        }
+    }
+
+    /**
+     * Same as LocationAdapter.getItemViewType, city rows use the state row's view
+     */
+    private static int getItemViewType(DrawerRows rows, int position){
+        int viewType = rows.getViewType(position);
+        return viewType == DrawerRows.CITY_ITEM ? DrawerRows.LOCATION_ITEM : viewType;
+    }
+
+    /**
+     * Same as LocationAdapter.onBindViewHolder, with the text going to the buffer
+     */
+    private void bind(DrawerRows rows, int position, Blackhole blackhole){
+        switch(rows.getViewType(position)){
+            case DrawerRows.LOCATION_ITEM:
+                setText(rows.getStateName(position), blackhole);
+                break;
+            case DrawerRows.CITY_ITEM:
+                setText(rows.getNamePool(), rows.getNameOffset(position),
+                        rows.getNameLength(position), blackhole);
+                break;
+            case DrawerRows.STATE_HEADER:
+                setText(rows.getStateHeader().getName(), blackhole);
+                break;
+            case DrawerRows.CITY_HEADER:
+                setText(rows.getCityHeader().getName(), blackhole);
+                break;
+        }
+    }
+
+    private void setText(String text, Blackhole blackhole){
+        int length = Math.min(text.length(), mText.length);
+        text.getChars(0, length, mText, 0);
+        blackhole.consume(mText);
+    }
+
+    private void setText(CharBuffer text, int start, int length, Blackhole blackhole){
+        LocationStore.getChars(text, start, Math.min(length, mText.length), mText, 0);
+        blackhole.consume(mText);
+    }
+}
@@ -0,0 +1,49 @@
+package com.caci.recycledrawer.benchmark;
+
+import com.caci.recycledrawer.data.DrawerRows;
+import com.caci.recycledrawer.data.LocationStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opening a state in the drawer: find its cities in the store and make the rows the adapter
+ * shows.  Each call opens the next state in turn, so big and small states are mixed the way
+ * they are when the user browses
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class CitiesByStateBenchmark {
+
+    private String[] mStateNames;
+    private int mNext;
+
+    @Setup
+    public void setUp(Dataset data){
+        mStateNames = data.store.getStateNames();
+    }
+
+    @Benchmark
+    public LocationStore.CitySlice getCitiesByState(Dataset data){
+        return data.store.getCitiesByState(nextState());
+    }
+
+    @Benchmark
+    public DrawerRows openState(Dataset data){
+        return DrawerRows.forCities(data.store.getCitiesByState(nextState()));
+    }
+
+    private String nextState(){
+        String name = mStateNames[mNext];
+        mNext = (mNext + 1) % mStateNames.length;
+        return name;
+    }
+}
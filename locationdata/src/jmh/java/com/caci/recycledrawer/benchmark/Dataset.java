@@ -0,0 +1,119 @@
+package com.caci.recycledrawer.benchmark;
+
+import com.caci.recycledrawer.data.Location;
+import com.caci.recycledrawer.data.LocationCollator;
+import com.caci.recycledrawer.data.LocationLoader;
+import com.caci.recycledrawer.data.LocationStore;
+import com.caci.recycledrawer.data.SyntheticCities;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The cities every benchmark runs on: the shipped cities.json, or a synthetic file of 10k, 100k
+ * or 1M cities.  The json is read into memory once per trial so the benchmarks measure parsing
+ * and not the disk, and it's loaded once into a builder and a store for the benchmarks that
+ * start from those
+ */
+@State(Scope.Benchmark)
+public class Dataset {
+
+    /**
+     * Location of the shipped json, set by the jmh block in build.gradle
+     */
+    private static final String SHIPPED_PROPERTY = "cities.json";
+
+    /**
+     * Collation locale, fixed so results don't depend on the machine
+     */
+    static final Locale LOCALE = Locale.US;
+
+    @Param({"shipped", "10000", "100000", "1000000"})
+    public String cities;
+
+    /**
+     * The json file's bytes
+     */
+    byte[] json;
+
+    /**
+     * Every city added, ready to build, and the store built from them
+     */
+    LocationStore.Builder builder;
+    LocationStore store;
+
+    /**
+     * Pool the parallel benchmarks sort on, the app makes one of default size per load
+     */
+    ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        json = readFile(getFile());
+        builder = parse(json);
+        store = builder.build(null, new LocationCollator(LOCALE));
+        pool = new ForkJoinPool();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        pool.shutdown();
+    }
+
+    /**
+     * Parse json into a builder, the way LocationLoadTask does
+     * @param json json array of cities
+     * @return builder holding every city
+     * @throws IOException if the json can't be parsed
+     */
+    static LocationStore.Builder parse(byte[] json) throws IOException {
+        final LocationStore.Builder builder = new LocationStore.Builder();
+        new LocationLoader(new ByteArrayInputStream(json)).load(new LocationLoader.LocationListener() {
+            @Override
+            public void onLocation(Location loc) {
+                builder.add(loc);
+            }
+        });
+        return builder;
+    }
+
+    /**
+     * Find the file for the cities parameter, writing the synthetic file if it isn't there yet
+     */
+    private File getFile() throws IOException {
+        if("shipped".equals(cities)){
+            String path = System.getProperty(SHIPPED_PROPERTY);
+            if(path == null){
+                throw new IllegalStateException("Set -D" + SHIPPED_PROPERTY
+                        + " to the path of assets/cities.json");
+            }
+            return new File(path);
+        }
+        SyntheticCities synthetic = new SyntheticCities();
+        synthetic.setCityCount(Integer.parseInt(cities));
+        return synthetic.write(new File(System.getProperty("java.io.tmpdir"),
+                "recycledrawer-benchmark"));
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.caci.recycledrawer.benchmark;
+
+import com.caci.recycledrawer.data.LocationCollator;
+import com.caci.recycledrawer.data.LocationStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting the states and grouping and sorting the cities of an already parsed dataset, the work
+ * LocationStore.Builder.build does once the json is read:
+ *   - sortStates: just the state names, what the drawer shows first
+ *   - buildSerial: the whole store, sorting on the calling thread
+ *   - buildParallel: the whole store, sorting the states' cities on a ForkJoinPool like the app
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GroupSortBenchmark {
+
+    @Benchmark
+    public String[] sortStates(Dataset data){
+        return data.builder.getSortedStateNames(new LocationCollator(Dataset.LOCALE));
+    }
+
+    @Benchmark
+    public LocationStore buildSerial(Dataset data){
+        return data.builder.build(null, new LocationCollator(Dataset.LOCALE));
+    }
+
+    @Benchmark
+    public LocationStore buildParallel(Dataset data){
+        return data.builder.build(data.pool, new LocationCollator(Dataset.LOCALE));
+    }
+}
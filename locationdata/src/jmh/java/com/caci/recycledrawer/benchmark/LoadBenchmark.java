@@ -0,0 +1,32 @@
+package com.caci.recycledrawer.benchmark;
+
+import com.caci.recycledrawer.data.LocationCollator;
+import com.caci.recycledrawer.data.LocationStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the json, as LocationLoadTask does on a launch with no index, snapshot or database:
+ *   - parse: stream every city out of the json into a builder
+ *   - parseAndBuild: parse, then sort the states and group and sort the cities into a store
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LoadBenchmark {
+
+    @Benchmark
+    public LocationStore.Builder parse(Dataset data) throws IOException {
+        return Dataset.parse(data.json);
+    }
+
+    @Benchmark
+    public LocationStore parseAndBuild(Dataset data) throws IOException {
+        return Dataset.parse(data.json).build(data.pool, new LocationCollator(Dataset.LOCALE));
+    }
+}
@@ -0,0 +1,162 @@
+package com.caci.recycledrawer.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Grouping stage of the loading pipeline.  Takes city rows in load order, each tagged with its
+ * state id, and produces:
+ *   - order: the rows grouped by state, sorted within each state
+ *   - stateStart: where each state's group starts in order, plus the total row count
+ * Grouping is a linear counting pass, then each group is sorted once.  Groups don't share any
+ * data, so with a ForkJoinPool they are sorted in parallel.
+ */
+public class CityGrouper {
+
+    /**
+     * Below this many rows the sorts aren't worth handing to another thread
+     */
+    private static final int PARALLEL_THRESHOLD = 8192;
+
+    /**
+     * Compares two rows for sorting within a group
+     */
+    public interface RowComparator {
+        int compare(int a, int b);
+    }
+
+    private final int[] mStateId;
+    private final int mCount;
+    private final int mStateCount;
+    private final RowComparator mComparator;
+
+    private int[] mOrder;
+    private int[] mStateStart;
+
+    /**
+     * Constructor
+     * @param stateId state id of each row, from 0 to stateCount - 1.  Groups come out in state
+     *                id order
+     * @param count number of rows
+     * @param stateCount number of states
+     * @param comparator order of rows within a group
+     */
+    public CityGrouper(int[] stateId, int count, int stateCount, RowComparator comparator){
+        mStateId = stateId;
+        mCount = count;
+        mStateCount = stateCount;
+        mComparator = comparator;
+    }
+
+    /**
+     * Group and sort the rows
+     * @param pool pool to sort the groups on in parallel, or null to sort on this thread
+     */
+    public void group(ForkJoinPool pool){
+        // Count the rows in each state to find where each group starts
+        mStateStart = new int[mStateCount + 1];
+        for(int i=0; i<mCount; i++){
+            mStateStart[mStateId[i] + 1]++;
+        }
+        for(int i=0; i<mStateCount; i++){
+            mStateStart[i + 1] += mStateStart[i];
+        }
+
+        // Place every row in its group
+        mOrder = new int[mCount];
+        int[] next = Arrays.copyOf(mStateStart, mStateCount);
+        for(int i=0; i<mCount; i++){
+            mOrder[next[mStateId[i]]++] = i;
+        }
+
+        // Sort each group once.  Groups are disjoint ranges, so they can share the scratch array
+        int[] scratch = new int[mCount];
+        if(pool == null || mCount < PARALLEL_THRESHOLD){
+            for(int i=0; i<mStateCount; i++){
+                sort(mOrder, scratch, mStateStart[i], mStateStart[i + 1]);
+            }
+        } else{
+            pool.invoke(new SortGroups(scratch));
+        }
+    }
+
+    /**
+     * Get the grouped rows
+     * @return row numbers, grouped by state and sorted within each state
+     */
+    public int[] getOrder(){
+        return mOrder;
+    }
+
+    /**
+     * Get where each state's group starts
+     * @return start of each group in the order, plus one extra entry holding the row count
+     */
+    public int[] getStateStart(){
+        return mStateStart;
+    }
+
+    /**
+     * Merge sort a range of row numbers
+     * @param rows row numbers
+     * @param scratch working space, same size as rows
+     * @param from start of the range (inclusive)
+     * @param to end of the range (exclusive)
+     */
+    private void sort(int[] rows, int[] scratch, int from, int to){
+        if(to - from < 2){
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        sort(rows, scratch, from, mid);
+        sort(rows, scratch, mid, to);
+        if(mComparator.compare(rows[mid - 1], rows[mid]) <= 0){
+            return;
+        }
+        System.arraycopy(rows, from, scratch, from, to - from);
+        int left = from;
+        int right = mid;
+        for(int i=from; i<to; i++){
+            if(right >= to || (left < mid && mComparator.compare(scratch[left], scratch[right]) <= 0)){
+                rows[i] = scratch[left++];
+            } else{
+                rows[i] = scratch[right++];
+            }
+        }
+    }
+
+    /**
+     * Sorts every group as its own fork join task.  Tasks are never serialized
+     * ---------------------------------------------
+     */
+    @SuppressWarnings("serial")
+    private class SortGroups extends RecursiveAction {
+
+        private final int[] mScratch;
+
+        SortGroups(int[] scratch){
+            mScratch = scratch;
+        }
+
+        @Override
+        protected void compute() {
+            List<RecursiveAction> tasks = new ArrayList<>(mStateCount);
+            for(int i=0; i<mStateCount; i++){
+                final int from = mStateStart[i];
+                final int to = mStateStart[i + 1];
+                if(to - from > 1){
+                    tasks.add(new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            sort(mOrder, mScratch, from, to);
+                        }
+                    });
+                }
+            }
+            invokeAll(tasks);
+        }
+    }
+}
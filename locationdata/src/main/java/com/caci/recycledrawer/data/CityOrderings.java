@@ -0,0 +1,123 @@
+package com.caci.recycledrawer.data;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The orders a state's cities can be listed in.  The store keeps each state's cities
+ * alphabetically, the other orders are permutations of the state's rows:
+ *   - POPULATION: biggest first
+ *   - RANK: by national rank, highest first
+ *   - GROWTH: fastest growing first, cities without a growth figure last
+ * Cities that tie keep their alphabetical order.  A state's permutations are sorted once, the
+ * first time they're asked for with prepare, and kept, so switching orders afterwards is just
+ * picking a different array.  prepare can run on any thread.
+ */
+public class CityOrderings {
+
+    /**
+     * Constants to identify the orders
+     */
+    public static final int ALPHABETICAL = 0;
+    public static final int POPULATION = 1;
+    public static final int RANK = 2;
+    public static final int GROWTH = 3;
+    private static final int ORDER_COUNT = 4;
+
+    private final LocationStore mStore;
+
+    /**
+     * Store rows of each state's cities in each order, by state * ORDER_COUNT + order.  Null
+     * until the state is prepared, and always null for ALPHABETICAL
+     */
+    private final AtomicReferenceArray<int[]> mOrders;
+
+    /**
+     * Constructor
+     * @param store store holding the cities
+     */
+    public CityOrderings(LocationStore store){
+        mStore = store;
+        mOrders = new AtomicReferenceArray<>(store.getStateCount() * ORDER_COUNT);
+    }
+
+    /**
+     * Check whether a state's orders have been sorted
+     * @param state state id
+     * @return true once prepare has finished for the state
+     */
+    public boolean isPrepared(int state){
+        return mOrders.get(state * ORDER_COUNT + GROWTH) != null;
+    }
+
+    /**
+     * Get a state's cities in an order
+     * @param state state id
+     * @param order one of the order constants
+     * @return store rows of the state's cities in the order, or null for alphabetical order,
+     * which is the store's own order.  Also null if the state hasn't been prepared
+     */
+    public int[] get(int state, int order){
+        return order == ALPHABETICAL ? null : mOrders.get(state * ORDER_COUNT + order);
+    }
+
+    /**
+     * Sort a state's cities in every order, if that hasn't been done yet.  Run it in the
+     * background, a big state takes a while
+     * @param state state id
+     */
+    public void prepare(int state){
+        if(isPrepared(state)){
+            return;
+        }
+        // Growth goes last, isPrepared checks for it
+        sort(state, POPULATION);
+        sort(state, RANK);
+        sort(state, GROWTH);
+    }
+
+    /**
+     * Sort a state's cities in one order
+     */
+    private void sort(int state, final int order){
+        LocationStore.CitySlice cities = mStore.getCities(state);
+        final int start = cities.getStart();
+        int count = cities.size();
+        CityGrouper grouper = new CityGrouper(new int[count], count, 1, new CityGrouper.RowComparator() {
+            @Override
+            public int compare(int a, int b) {
+                return compareCities(start + a, start + b, order);
+            }
+        });
+        grouper.group(null);
+
+        // The grouper sorts positions in the state, turn them into store rows
+        int[] rows = grouper.getOrder();
+        for(int i=0; i<count; i++){
+            rows[i] += start;
+        }
+        mOrders.set(state * ORDER_COUNT + order, rows);
+    }
+
+    /**
+     * Compare two cities in an order.  The sort is stable, so ties stay alphabetical
+     */
+    private int compareCities(int a, int b, int order){
+        switch(order){
+            case POPULATION:
+                return Integer.compare(mStore.getPopulation(b), mStore.getPopulation(a));
+            case RANK:
+                return Integer.compare(mStore.getRank(a), mStore.getRank(b));
+            default:
+                // Location.GROWTH_UNKNOWN is the smallest int, so those come last
+                return Integer.compare(mStore.getGrowth(b), mStore.getGrowth(a));
+        }
+    }
+
+    /**
+     * Getters
+     * @return
+     */
+    public LocationStore getStore() {
+        return mStore;
+    }
+}
@@ -0,0 +1,107 @@
+package com.caci.recycledrawer.data;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * A fixed size run of a paged city list's names, kept the same way the LocationStore keeps them:
+ * one char pool with an offset per city.  Pages are reused once they're evicted, so scrolling
+ * through a big list doesn't keep allocating.  A reused page's chars are overwritten, so views
+ * must copy a name rather than keep the page's array
+ */
+public class CityPage {
+
+    /**
+     * Position of the page's first city in the list
+     */
+    private int mStart;
+
+    /**
+     * Number of cities in the page, and the most it can hold
+     */
+    private int mCount;
+    private final int mCapacity;
+
+    /**
+     * Names back to back.  City i of the page is the chars from mNameOffset[i] to
+     * mNameOffset[i+1]
+     */
+    private final int[] mNameOffset;
+    private char[] mNamePool;
+
+    /**
+     * Constructor
+     * @param capacity number of cities in a page
+     */
+    public CityPage(int capacity){
+        mCapacity = capacity;
+        mNameOffset = new int[capacity + 1];
+        mNamePool = new char[capacity * 16];
+    }
+
+    /**
+     * Empty the page to fill it from a new position
+     * @param start position of the page's first city in the list
+     */
+    public void reset(int start){
+        mStart = start;
+        mCount = 0;
+    }
+
+    /**
+     * Add the next city
+     * @param pool name pool holding the city name, such as the store's
+     * @param offset start of the name in the pool
+     * @param length length of the name
+     */
+    public void add(CharBuffer pool, int offset, int length){
+        int poolSize = mNameOffset[mCount];
+        if(poolSize + length > mNamePool.length){
+            mNamePool = Arrays.copyOf(mNamePool, Math.max(mNamePool.length * 2, poolSize + length));
+        }
+        LocationStore.getChars(pool, offset, length, mNamePool, poolSize);
+        mCount++;
+        mNameOffset[mCount] = poolSize + length;
+    }
+
+    /**
+     * Check whether a page holds a city
+     * @param index position of the city in the list
+     * @return true if the city is in the page
+     */
+    public boolean contains(int index){
+        return index >= mStart && index < mStart + mCount;
+    }
+
+    /**
+     * Getters
+     * @return
+     */
+    public int getStart() {
+        return mStart;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Name getters for the cities in the page
+     * @param index position of the city in the list
+     */
+    public char[] getNamePool(){
+        return mNamePool;
+    }
+
+    public int getNameOffset(int index){
+        return mNameOffset[index - mStart];
+    }
+
+    public int getNameLength(int index){
+        return mNameOffset[index - mStart + 1] - mNameOffset[index - mStart];
+    }
+}
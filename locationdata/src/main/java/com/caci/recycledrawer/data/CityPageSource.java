@@ -0,0 +1,35 @@
+package com.caci.recycledrawer.data;
+
+/**
+ * A state's cities, read a page at a time.  Used for states too big to keep in memory, the
+ * source only has to know how to fill one page
+ */
+public interface CityPageSource {
+
+    /**
+     * Get the number of cities
+     * @return city count
+     */
+    int size();
+
+    /**
+     * Get the row a city has in the backing data, without loading it
+     * @param index position of the city in the list
+     * @return row in the backing data, stable for as long as the data doesn't change
+     */
+    int getRow(int index);
+
+    /**
+     * Switch the order cities are read in.  Called on the main thread, pages loading meanwhile
+     * may be read in either order
+     * @param order rows of the backing data in the new order, or null for the source's own order
+     */
+    void setOrder(int[] order);
+
+    /**
+     * Read cities into a page.  Called on a background thread
+     * @param start position of the first city to read
+     * @param page page to fill, as many cities as it holds or up to the end of the list
+     */
+    void loadPage(int start, CityPage page);
+}
@@ -0,0 +1,385 @@
+package com.caci.recycledrawer.data;
+
+import java.nio.CharBuffer;
+
+/**
+ * The rows shown in the drawer's RecyclerView: a list of states, one state's cities, search
+ * results or the cities nearby.  Rows are laid out as an optional header, then the state rows,
+ * then the city rows, so a row's view type follows from its position without any per row array,
+ * and each row's data is read through a typed accessor, so adapters never need instanceof checks
+ * or casts:
+ *   - STATE_HEADER: getStateHeader()
+ *   - CITY_HEADER: getCityHeader()
+ *   - LOCATION_ITEM: a state name, getStateName(position)
+ *   - CITY_ITEM: a city name, read from the store's name pool with getNamePool(),
+ *     getNameOffset(position) and getNameLength(position)
+ * State rows come before city rows.  City rows are a range of store rows, or a range of an array
+ * of store rows such as a search index's sorted order; neither is copied.  A paged city list's
+ * rows hold no per row data at all, its names are read from whichever CityPage is loaded.
+ *
+ * Every row has a stable item id made from the dense ids the store assigns at load time, the
+ * state id or city row, so a state or city keeps its id in every list it appears in.
+ */
+public class DrawerRows {
+
+    /**
+     * Constants to identify the type of view to be inflated
+     */
+    public static final int STATE_HEADER = 1;
+    public static final int CITY_HEADER = 2;
+    public static final int LOCATION_ITEM = 3;
+    public static final int CITY_ITEM = 4;
+
+    /**
+     * Constants to identify what the rows list
+     */
+    public static final int KIND_STATES = 1;
+    public static final int KIND_CITIES = 2;
+    public static final int KIND_SEARCH = 3;
+    public static final int KIND_NEARBY = 4;
+
+    /**
+     * Item id bases for state and city rows, so their ids never collide.  Headers use the
+     * negative view type
+     */
+    private static final long STATE_ITEM_ID = 1L << 32;
+    private static final long CITY_ITEM_ID = 2L << 32;
+
+    /**
+     * What the rows list
+     */
+    private final int mKind;
+
+    /**
+     * Number of rows, and the view type of the header in the first row, or 0 for no header
+     */
+    private final int mSize;
+    private final int mHeaderType;
+
+    /**
+     * Header data, null if the rows don't have that header
+     */
+    private StateHeaderData mStateHeader;
+    private CityHeaderData mCityHeader;
+
+    /**
+     * State rows: the names and their state ids, the first state row, and the index of its name
+     * in mStateNames.  Without state ids a state's index in mStateNames is its id
+     */
+    private String[] mStateNames;
+    private int[] mStateIds;
+    private int mFirstStatePosition;
+    private int mStateOffset;
+
+    /**
+     * City rows: the store, the first city row, and the index of its store row.  If mCityRows is
+     * set the index is into mCityRows, otherwise it's the store row itself
+     */
+    private LocationStore mStore;
+    private int[] mCityRows;
+    private int mFirstCityPosition;
+    private int mCityOffset;
+
+    /**
+     * The state's cities for a city list
+     */
+    private LocationStore.CitySlice mCities;
+
+    /**
+     * The cities of a paged city list
+     */
+    private PagedCityList mPagedCities;
+
+    /**
+     * Constructor.  Set mFirstStatePosition and mFirstCityPosition to where the state and city
+     * rows start, rows without state or city rows start them at the end
+     * @param kind what the rows list
+     * @param size number of rows
+     * @param headerType view type of the first row, or 0 if there's no header
+     */
+    private DrawerRows(int kind, int size, int headerType){
+        mKind = kind;
+        mSize = size;
+        mHeaderType = headerType;
+        int first = headerType != 0 ? 1 : 0;
+        mFirstStatePosition = first;
+        mFirstCityPosition = first;
+    }
+
+    /**
+     * Rows for a list of states: a state header followed by one row per state
+     * @param stateNames sorted state names.  Sorted the same way as the store's states, so a
+     *                   state's position is its state id
+     * @return the rows
+     */
+    public static DrawerRows forStates(String[] stateNames){
+        DrawerRows rows = new DrawerRows(KIND_STATES, stateNames.length + 1, STATE_HEADER);
+        rows.mStateHeader = new StateHeaderData("US States", stateNames.length);
+        rows.mStateNames = stateNames;
+        rows.mFirstCityPosition = rows.mSize;
+        return rows;
+    }
+
+    /**
+     * Rows for a state's cities: a city header followed by one row per city
+     * @param cities the state's cities
+     * @return the rows
+     */
+    public static DrawerRows forCities(LocationStore.CitySlice cities){
+        DrawerRows rows = new DrawerRows(KIND_CITIES, cities.size() + 1, CITY_HEADER);
+        rows.mCityHeader = new CityHeaderData(cities.getStateName());
+        rows.mStore = cities.getStore();
+        rows.mCityOffset = cities.getStart();
+        rows.mCities = cities;
+        return rows;
+    }
+
+    /**
+     * Rows for a state's cities that are loaded a page at a time: a city header followed by one
+     * row per city
+     * @param cities the paged cities
+     * @return the rows
+     */
+    public static DrawerRows forPagedCities(PagedCityList cities){
+        DrawerRows rows = new DrawerRows(KIND_CITIES, cities.size() + 1, CITY_HEADER);
+        rows.mCityHeader = new CityHeaderData(cities.getStateName());
+        rows.mPagedCities = cities;
+        return rows;
+    }
+
+    /**
+     * Rows for search results: the matching states followed by the matching cities, no header
+     * @param stateNames names the matching states are a range of
+     * @param stateIds state ids of stateNames
+     * @param stateStart first matching state in stateNames
+     * @param stateEnd end of the matching states in stateNames (exclusive)
+     * @param store store the cities are in
+     * @param cityRows store rows the matching cities are a range of
+     * @param cityStart first matching city in cityRows
+     * @param cityEnd end of the matching cities in cityRows (exclusive)
+     * @return the rows
+     */
+    public static DrawerRows forSearch(String[] stateNames, int[] stateIds, int stateStart,
+                                       int stateEnd, LocationStore store, int[] cityRows,
+                                       int cityStart, int cityEnd){
+        int stateCount = stateEnd - stateStart;
+        int cityCount = cityEnd - cityStart;
+        DrawerRows rows = new DrawerRows(KIND_SEARCH, stateCount + cityCount, 0);
+        rows.mStateNames = stateNames;
+        rows.mStateIds = stateIds;
+        rows.mStateOffset = stateStart;
+        rows.mStore = store;
+        rows.mCityRows = cityRows;
+        rows.mFirstCityPosition = stateCount;
+        rows.mCityOffset = cityStart;
+        return rows;
+    }
+
+    /**
+     * Rows for the cities nearest the user: a header followed by the cities, nearest first
+     * @param store store the cities are in
+     * @param cityRows store rows of the cities, nearest first
+     * @param count number of cities in cityRows
+     * @return the rows
+     */
+    public static DrawerRows forNearby(LocationStore store, int[] cityRows, int count){
+        DrawerRows rows = new DrawerRows(KIND_NEARBY, count + 1, CITY_HEADER);
+        rows.mCityHeader = new CityHeaderData("Nearby");
+        rows.mStore = store;
+        rows.mCityRows = cityRows;
+        return rows;
+    }
+
+    /**
+     * No rows at all
+     * @return empty rows
+     */
+    public static DrawerRows empty(){
+        DrawerRows rows = new DrawerRows(KIND_STATES, 0, 0);
+        rows.mStateNames = new String[0];
+        return rows;
+    }
+
+    /**
+     * Change the order of a city list's cities, keeping the rows.  Nothing is copied or sorted
+     * @param cityRows store rows of the state's cities in the new order, from
+     *                 CityOrderings.get, or null for the store's alphabetical order
+     */
+    public void setCityOrder(int[] cityRows){
+        if(mPagedCities != null){
+            // The pages are read again in the new order
+            mCityRows = cityRows;
+            mPagedCities.setOrder(cityRows);
+            return;
+        }
+        if(mCities == null){
+            return;
+        }
+        mCityRows = cityRows;
+        mCityOffset = cityRows != null ? 0 : mCities.getStart();
+    }
+
+    /**
+     * Get the order of a city list's cities
+     * @return the array set with setCityOrder, null for alphabetical order
+     */
+    public int[] getCityOrder(){
+        return mCityRows;
+    }
+
+    /**
+     * Get what the rows list
+     * @return one of the kind constants
+     */
+    public int getKind(){
+        return mKind;
+    }
+
+    /**
+     * Check whether these are a state's cities
+     * @return true for a list of cities
+     */
+    public boolean isCityList(){
+        return mKind == KIND_CITIES;
+    }
+
+    /**
+     * Get the number of rows
+     * @return row count
+     */
+    public int size(){
+        return mSize;
+    }
+
+    /**
+     * Estimate the memory these rows hold on to.  Rows only read the names, state ids and city
+     * rows they were made from, so only the objects themselves are counted.  A paged list's
+     * pages aren't counted, it evicts them itself
+     * @return estimated size in bytes
+     */
+    public int estimateBytes(){
+        return 64;
+    }
+
+    /**
+     * Get the type of view to show for a row
+     * @param position row
+     * @return one of the view type constants
+     */
+    public int getViewType(int position){
+        if(position == 0 && mHeaderType != 0){
+            return mHeaderType;
+        }
+        return position < mFirstCityPosition ? LOCATION_ITEM : CITY_ITEM;
+    }
+
+    /**
+     * Getters for the headers
+     * @return header data, null if the rows don't have that type of header
+     */
+    public StateHeaderData getStateHeader() {
+        return mStateHeader;
+    }
+
+    public CityHeaderData getCityHeader() {
+        return mCityHeader;
+    }
+
+    /**
+     * Get the state shown in a LOCATION_ITEM row
+     * @param position row
+     * @return state name
+     */
+    public String getStateName(int position){
+        return mStateNames[mStateOffset + position - mFirstStatePosition];
+    }
+
+    /**
+     * Get the id of the state shown in a LOCATION_ITEM row
+     * @param position row
+     * @return state id in the store
+     */
+    public int getStateId(int position){
+        int index = mStateOffset + position - mFirstStatePosition;
+        return mStateIds != null ? mStateIds[index] : index;
+    }
+
+    /**
+     * Get a row's stable item id
+     * @param position row
+     * @return the same id for the same state or city in any list
+     */
+    public long getItemId(int position){
+        int viewType = getViewType(position);
+        switch(viewType){
+            case LOCATION_ITEM:
+                return STATE_ITEM_ID | getStateId(position);
+            case CITY_ITEM:
+                return CITY_ITEM_ID | getCity(position);
+            default:
+                return -viewType;
+        }
+    }
+
+    /**
+     * Get the store row of the city shown in a CITY_ITEM row
+     * @param position row
+     * @return city row in the store
+     */
+    public int getCity(int position){
+        if(mPagedCities != null){
+            return mPagedCities.getRow(getCityIndex(position));
+        }
+        int index = mCityOffset + position - mFirstCityPosition;
+        return mCityRows != null ? mCityRows[index] : index;
+    }
+
+    /**
+     * Get the position of a CITY_ITEM row among the city rows
+     * @param position row
+     * @return index of the city, 0 for the first city row
+     */
+    public int getCityIndex(int position){
+        return position - mFirstCityPosition;
+    }
+
+    /**
+     * City name getters for CITY_ITEM rows.  Names are read from the store without creating
+     * Strings.  Not for paged lists, read those from getPagedCities().getPage
+     */
+    public CharBuffer getNamePool(){
+        return mStore.getNamePool();
+    }
+
+    public int getNameOffset(int position){
+        return mStore.getNameOffset(getCity(position));
+    }
+
+    public int getNameLength(int position){
+        return mStore.getNameLength(getCity(position));
+    }
+
+    /**
+     * Get the store the city rows come from
+     * @return store, null if there are no city rows
+     */
+    public LocationStore getStore(){
+        return mStore;
+    }
+
+    /**
+     * Get the cities these rows were made from
+     * @return cities, null unless the rows are a city list
+     */
+    public LocationStore.CitySlice getCities(){
+        return mCities;
+    }
+
+    /**
+     * Get the paged cities these rows were made from
+     * @return cities, null unless the rows are a paged city list
+     */
+    public PagedCityList getPagedCities(){
+        return mPagedCities;
+    }
+}
@@ -0,0 +1,52 @@
+package com.caci.recycledrawer.data;
+
+/**
+ * Pages of a state's cities read from a store's columns.  With the store read from the memory
+ * mapped LocationIndex, a state's names are only on the heap while their page is.  Cities are in
+ * the store's order, by name, or in an order from CityOrderings
+ */
+public class IndexPageSource implements CityPageSource {
+
+    private final LocationStore.CitySlice mCities;
+
+    /**
+     * Store rows of the cities in the order picked, or null for the store's order.  Set on the
+     * main thread and read by the page loads
+     */
+    private volatile int[] mOrder;
+
+    /**
+     * Constructor
+     * @param cities the state's cities
+     */
+    public IndexPageSource(LocationStore.CitySlice cities){
+        mCities = cities;
+    }
+
+    @Override
+    public int size() {
+        return mCities.size();
+    }
+
+    @Override
+    public int getRow(int index) {
+        int[] order = mOrder;
+        return order != null ? order[index] : mCities.getCity(index);
+    }
+
+    @Override
+    public void setOrder(int[] order) {
+        mOrder = order;
+    }
+
+    @Override
+    public void loadPage(int start, CityPage page) {
+        LocationStore store = mCities.getStore();
+        page.reset(start);
+        int end = Math.min(start + page.getCapacity(), mCities.size());
+        for(int i=start; i<end; i++){
+            int row = getRow(i);
+            page.add(store.getNamePool(), store.getNameOffset(row), store.getNameLength(row));
+        }
+    }
+}
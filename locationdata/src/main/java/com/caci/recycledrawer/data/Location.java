@@ -0,0 +1,116 @@
+package com.caci.recycledrawer.data;
+
+/**
+ * A Location made up of:
+ * City
+ * Lat
+ * Lon
+ * Population
+ * Rank
+ * Growth
+ * State
+ * Numbers are parsed once when the location is loaded, so nothing needs to re-parse strings later
+ */
+public class Location {
+
+    /**
+     * Growth value used when the data doesn't have one
+     */
+    public static final int GROWTH_UNKNOWN = Integer.MIN_VALUE;
+
+    String city;
+    String state;
+    double lat;
+    double lon;
+    int population;
+    int rank;
+
+    /**
+     * Growth from 2000 to 2013 in tenths of a percent, so "4.8%" is 48
+     */
+    int growth = GROWTH_UNKNOWN;
+
+    public Location(String state, String city){
+        this.state = state;
+        this.city = city;
+    }
+
+    /**
+     * Parse a growth percentage like "4.8%" or "-6.1%"
+     * @param growth growth string, may be empty
+     * @return growth in tenths of a percent, or GROWTH_UNKNOWN if empty
+     */
+    public static int parseGrowth(String growth){
+        if(growth == null){
+            return GROWTH_UNKNOWN;
+        }
+        String number = growth.trim();
+        if(number.endsWith("%")){
+            number = number.substring(0, number.length() - 1);
+        }
+        if(number.isEmpty()){
+            return GROWTH_UNKNOWN;
+        }
+        return (int)Math.round(Double.parseDouble(number) * 10);
+    }
+
+    /**
+     * Getters and setters
+     * @return
+     */
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public double getLat() {
+        return lat;
+    }
+
+    public void setLat(double lat) {
+        this.lat = lat;
+    }
+
+    public double getLon() {
+        return lon;
+    }
+
+    public void setLon(double lon) {
+        this.lon = lon;
+    }
+
+    public int getPopulation() {
+        return population;
+    }
+
+    public void setPopulation(int population) {
+        this.population = population;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public void setRank(int rank) {
+        this.rank = rank;
+    }
+
+    public int getGrowth() {
+        return growth;
+    }
+
+    public void setGrowth(int growth) {
+        this.growth = growth;
+    }
+}
@@ -0,0 +1,100 @@
+package com.caci.recycledrawer.data;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Sorts state and city names the way the user's locale expects (accents, case, etc.) using
+ * CollationKeys.  A LocationStore's names are keyed once per locale with getKeyBytes and the
+ * keys are kept with the store as SortKeys, so sorting the store again only compares them.  sort
+ * builds throwaway keys, for short lists that aren't in a store.
+ */
+public class LocationCollator {
+
+    /**
+     * Shared instance, so every load sorts for the locale the activity last set
+     */
+    private static LocationCollator sInstance;
+
+    /**
+     * Current locale and its collator
+     */
+    private Locale mLocale;
+    private Collator mCollator;
+
+    /**
+     * Constructor
+     * @param locale locale to sort for
+     */
+    public LocationCollator(Locale locale){
+        setLocale(locale);
+    }
+
+    /**
+     * Get the shared instance, created for the default locale
+     * @return shared collator
+     */
+    public static synchronized LocationCollator getInstance(){
+        if(sInstance == null){
+            sInstance = new LocationCollator(Locale.getDefault());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Switch the locale names are sorted for
+     * @param locale locale to sort for
+     */
+    public synchronized void setLocale(Locale locale){
+        if(locale.equals(mLocale)){
+            return;
+        }
+        mLocale = locale;
+        mCollator = Collator.getInstance(locale);
+    }
+
+    /**
+     * Get the locale names are sorted for
+     * @return locale
+     */
+    public synchronized Locale getLocale(){
+        return mLocale;
+    }
+
+    /**
+     * Build the comparison key for a name.  Keep it only as long as the sort it's for
+     * @param name state or city name
+     * @return key for the current locale
+     */
+    public synchronized CollationKey getKey(String name){
+        return mCollator.getCollationKey(name);
+    }
+
+    /**
+     * Build the compact comparison key for a name, to be kept.  Keys compare as unsigned bytes
+     * in the same order as the CollationKeys
+     * @param name state or city name
+     * @return CollationKey.toByteArray of the key for the current locale
+     */
+    public byte[] getKeyBytes(String name){
+        return getKey(name).toByteArray();
+    }
+
+    /**
+     * Sort names in place by their keys
+     * @param names names to sort
+     */
+    public void sort(String[] names){
+        CollationKey[] keys = new CollationKey[names.length];
+        for(int i=0; i<names.length; i++){
+            keys[i] = getKey(names[i]);
+        }
+        // CollationKey.compareTo only compares the prebuilt keys
+        Arrays.sort(keys);
+        for(int i=0; i<keys.length; i++){
+            names[i] = keys[i].getSourceString();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.caci.recycledrawer.data;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * Read-only view of the binary location index that the compileLocationIndex gradle task builds
+ * from assets/cities.json with main().  The index is a LocationStore's columns, with the states
+ * and cities already sorted for one locale, every name already folded into its search key, and
+ * the names' collation keys for that locale and any others the index was compiled with.
+ * It's memory mapped and the store reads its columns straight from the mapped buffer, so
+ * nothing is parsed, sorted, folded or copied onto the heap at runtime.
+ *
+ * Layout (little endian, the byte order of every Android device):
+ *   - Header: magic, version, checksum of the json the index was compiled from, length and
+ *     UTF-8 bytes of the locale the names are sorted for, padded to 8 bytes
+ *   - The store's columns, see LocationStore.writeColumns
+ */
+public class LocationIndex {
+
+    /**
+     * Name of the index in the assets dir, and of the copy in the files dir
+     */
+    public static final String ASSET_NAME = "cities.idx";
+
+    /**
+     * Identifies the file format.  Bump the version whenever the columns written change
+     */
+    private static final int MAGIC = 0x4C494458;
+    private static final int VERSION = 4;
+
+    /**
+     * Magic, version, checksum and locale length
+     */
+    private static final int HEADER_SIZE = 20;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final long mChecksum;
+    private final String mLocale;
+    private final LocationStore mStore;
+
+    /**
+     * Constructor
+     * @param buffer buffer holding a complete index file, positioned at its start.  Its byte
+     *               order is set to the index's
+     * @throws IOException if the buffer doesn't hold an index in the expected format
+     */
+    public LocationIndex(ByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if(buffer.getInt() != MAGIC){
+                throw new IOException("Not a location index");
+            }
+            int version = buffer.getInt();
+            if(version != VERSION){
+                throw new IOException("Unsupported location index version: " + version);
+            }
+            mChecksum = buffer.getLong();
+            int localeLength = buffer.getInt();
+            if(localeLength < 0 || localeLength > buffer.remaining()){
+                throw new BufferUnderflowException();
+            }
+            byte[] locale = new byte[localeLength];
+            buffer.get(locale);
+            mLocale = new String(locale, UTF_8);
+            mStore = LocationStore.readColumns(buffer);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt location index", e);
+        }
+    }
+
+    /**
+     * Map an index file
+     * @param file index file
+     * @return the mapped index
+     * @throws IOException if the file can't be read or isn't an index
+     */
+    public static LocationIndex map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            // The mapping stays valid after the channel is closed
+            return new LocationIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Write a store as an index
+     * @param store store to write, sorted for the locale
+     * @param checksum checksum of the json the store was built from
+     * @param locale locale the store's names were sorted for
+     * @param file index file to write
+     * @throws IOException if the file can't be written
+     */
+    public static void write(LocationStore store, long checksum, String locale, File file)
+            throws IOException {
+        byte[] localeBytes = locale.getBytes(UTF_8);
+        int headerSize = LocationStore.align(HEADER_SIZE + localeBytes.length);
+        ByteBuffer buffer = ByteBuffer.allocate(headerSize + store.getColumnsSize());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(checksum);
+        buffer.putInt(localeBytes.length);
+        buffer.put(localeBytes);
+        store.writeColumns(buffer);
+
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(buffer.array());
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Compile a json file into an index.  Run by the compileLocationIndex task in app/build.gradle
+     * @param args the json file, the index file to write, the language tag of the locale to
+     *             sort the names for, then the language tags of any other locales to store
+     *             collation keys for, so sorting for them on a device only compares the keys
+     * @throws IOException if the json can't be read or the index can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 3){
+            System.err.println("Usage: LocationIndex <cities.json> <cities.idx> <language tag> "
+                    + "[<other language tags>...]");
+            System.exit(1);
+        }
+        File json = new File(args[0]);
+        Locale locale = Locale.forLanguageTag(args[2]);
+        final LocationStore.Builder builder = new LocationStore.Builder();
+        new LocationLoader(new FileInputStream(json)).load(new LocationLoader.LocationListener() {
+            @Override
+            public void onLocation(Location location) {
+                builder.add(location);
+            }
+        });
+        LocationStore store = builder.build(null, new LocationCollator(locale));
+        for(int i=3; i<args.length; i++){
+            store = store.withSortKeys(new LocationCollator(Locale.forLanguageTag(args[i])));
+        }
+        write(store, LocationLoader.checksum(new FileInputStream(json)), locale.toString(),
+                new File(args[1]));
+    }
+
+    /**
+     * Get the checksum of the json the index was compiled from
+     * @return checksum, from LocationLoader.checksum
+     */
+    public long getChecksum(){
+        return mChecksum;
+    }
+
+    /**
+     * Get the locale the index's states and cities are sorted for
+     * @return the locale's toString, such as en_US
+     */
+    public String getLocale(){
+        return mLocale;
+    }
+
+    /**
+     * Get the store, with its columns read from the mapped buffer
+     * @return the store
+     */
+    public LocationStore getStore(){
+        return mStore;
+    }
+}
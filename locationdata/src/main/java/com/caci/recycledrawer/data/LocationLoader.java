@@ -0,0 +1,125 @@
+package com.caci.recycledrawer.data;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.zip.CRC32;
+
+/**
+ * Streams Location objects out of a json array of cities (see assets/cities.json).  The file is
+ * read one token at a time straight from the stream, so only the current row is ever held in
+ * memory.  Numbers are parsed here, once, into the Location's typed fields.  The reader is Gson's
+ * streaming JsonReader, the same API as Android's, so loading runs on a plain JVM too.
+ */
+public class LocationLoader {
+
+    /**
+     * Json field names that we keep
+     */
+    private static final String FIELD_STATE = "state";
+    private static final String FIELD_CITY = "city";
+    private static final String FIELD_LATITUDE = "latitude";
+    private static final String FIELD_LONGITUDE = "longitude";
+    private static final String FIELD_POPULATION = "population";
+    private static final String FIELD_RANK = "rank";
+    private static final String FIELD_GROWTH = "growth_from_2000_to_2013";
+
+    /**
+     * Stream containing the json array
+     */
+    private InputStream mStream;
+
+    /**
+     * Constructor
+     * @param stream - stream to read the json array from.  Closed when loading finishes
+     */
+    public LocationLoader(InputStream stream){
+        mStream = stream;
+    }
+
+    /**
+     * Read every row from the stream, handing each Location to the listener as soon as it has
+     * been read
+     * @param listener - receives each Location in file order
+     * @return number of locations read
+     * @throws IOException if the stream can't be read or isn't a json array of objects
+     */
+    public int load(LocationListener listener) throws IOException {
+        int count = 0;
+        JsonReader reader = new JsonReader(new InputStreamReader(mStream, "UTF-8"));
+        try {
+            reader.beginArray();
+            while(reader.hasNext()){
+                listener.onLocation(readLocation(reader));
+                count++;
+            }
+            reader.endArray();
+        } finally {
+            reader.close();
+        }
+        return count;
+    }
+
+    /**
+     * Checksum a json file, to tell whether something built from it is stale without parsing it
+     * @param stream - stream to checksum, closed once read
+     * @return CRC32 of the stream's bytes
+     * @throws IOException if the stream can't be read
+     */
+    public static long checksum(InputStream stream) throws IOException {
+        CRC32 crc = new CRC32();
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = stream.read(buffer)) != -1){
+                crc.update(buffer, 0, read);
+            }
+        } finally {
+            stream.close();
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Read a single json object into a Location
+     * @param reader reader positioned at the start of an object
+     * @return the Location
+     */
+    private Location readLocation(JsonReader reader) throws IOException {
+        Location loc = new Location(null, null);
+
+        reader.beginObject();
+        while(reader.hasNext()){
+            String name = reader.nextName();
+            // JsonReader parses quoted numbers too, the population and rank are strings in the json
+            if(FIELD_STATE.equals(name)){
+                loc.setState(reader.nextString());
+            } else if(FIELD_CITY.equals(name)){
+                loc.setCity(reader.nextString());
+            } else if(FIELD_LATITUDE.equals(name)){
+                loc.setLat(reader.nextDouble());
+            } else if(FIELD_LONGITUDE.equals(name)){
+                loc.setLon(reader.nextDouble());
+            } else if(FIELD_POPULATION.equals(name)){
+                loc.setPopulation(reader.nextInt());
+            } else if(FIELD_RANK.equals(name)){
+                loc.setRank(reader.nextInt());
+            } else if(FIELD_GROWTH.equals(name)){
+                loc.setGrowth(Location.parseGrowth(reader.nextString()));
+            } else{
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return loc;
+    }
+
+    /**
+     * Callback for each Location read from the stream
+     */
+    public interface LocationListener {
+        void onLocation(Location location);
+    }
+}
@@ -0,0 +1,153 @@
+package com.caci.recycledrawer.data;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/**
+ * A built LocationStore saved to a file, so sorting for a locale the prebuilt index wasn't
+ * compiled for, or parsing, grouping, sorting and folding the json without the index, only
+ * happens on the first launch.
+ *
+ * Layout (little endian, like the LocationIndex):
+ *   - Header: magic, format version, checksum of the json the store was built from, length and
+ *     UTF-8 bytes of the collator locale the names were sorted for
+ *   - Payload length and CRC32, padded to 8 bytes, then the payload: the store's columns, see
+ *     LocationStore.writeColumns
+ * A snapshot is only used if the format version, json checksum and locale all match and the
+ * payload's CRC checks out.  It's read with one bulk read into a heap buffer that the store's
+ * columns are views of.
+ */
+public class LocationSnapshot {
+
+    /**
+     * Name of the snapshot in the files dir
+     */
+    public static final String FILE_NAME = "locations.snapshot";
+
+    /**
+     * Identifies the file format.  Bump the version whenever the columns written change
+     */
+    private static final int MAGIC = 0x4C534E50;
+    private static final int VERSION = 3;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mFile;
+
+    /**
+     * Constructor
+     * @param file snapshot file, which doesn't have to exist yet
+     */
+    public LocationSnapshot(File file){
+        mFile = file;
+    }
+
+    /**
+     * Read the snapshot if it was built from the same json for the same locale.  A snapshot
+     * that's corrupt is deleted before the exception is thrown, so it isn't tried again
+     * @param checksum checksum of the json, from LocationLoader.checksum
+     * @param locale locale the names have to be sorted for
+     * @return the store, or null if there's no snapshot or it's stale
+     * @throws IOException if the snapshot can't be read or is corrupt
+     */
+    public LocationStore read(long checksum, String locale) throws IOException {
+        if(!mFile.exists()){
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(readFile()).order(ByteOrder.LITTLE_ENDIAN);
+
+        try {
+            if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != checksum){
+                // Stale, the next write replaces it
+                return null;
+            }
+            byte[] savedLocale = new byte[buffer.getInt()];
+            buffer.get(savedLocale);
+            if(!locale.equals(new String(savedLocale, UTF_8))){
+                return null;
+            }
+
+            int payloadLength = buffer.getInt();
+            long payloadCrc = buffer.getLong();
+            LocationStore.align(buffer);
+            if(payloadLength != buffer.remaining()
+                    || crc(buffer.array(), buffer.position(), payloadLength) != payloadCrc){
+                throw new IOException("Corrupt location snapshot");
+            }
+            return LocationStore.readColumns(buffer);
+        } catch (IOException e) {
+            // Garbled, don't try it again
+            mFile.delete();
+            throw e;
+        } catch (RuntimeException e) {
+            // Truncated or not columns at all
+            mFile.delete();
+            throw new IOException("Corrupt location snapshot", e);
+        }
+    }
+
+    /**
+     * Save a store.  Written to a temp file first so a failed write never leaves a partial
+     * snapshot behind
+     * @param store store to save
+     * @param checksum checksum of the json the store was built from
+     * @param locale locale the store's names were sorted for
+     * @throws IOException if the snapshot can't be written
+     */
+    public void write(LocationStore store, long checksum, String locale) throws IOException {
+        byte[] localeBytes = locale.getBytes(UTF_8);
+        int payloadLength = store.getColumnsSize();
+        // Magic, version, checksum, locale length, payload length and CRC, plus the locale
+        int headerLength = LocationStore.align(32 + localeBytes.length);
+        ByteBuffer buffer = ByteBuffer.allocate(headerLength + payloadLength);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(checksum);
+        buffer.putInt(localeBytes.length);
+        buffer.put(localeBytes);
+        buffer.putInt(payloadLength);
+        int crcPosition = buffer.position();
+        buffer.putLong(0);
+        store.writeColumns(buffer);
+        buffer.putLong(crcPosition, crc(buffer.array(), headerLength, payloadLength));
+
+        File temp = new File(mFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(buffer.array());
+        } finally {
+            out.close();
+        }
+        if(!temp.renameTo(mFile)){
+            temp.delete();
+            throw new IOException("Unable to write " + mFile);
+        }
+    }
+
+    /**
+     * Read the whole file in one go
+     */
+    private byte[] readFile() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(mFile, "r");
+        try {
+            byte[] bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+            return bytes;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static long crc(byte[] bytes, int offset, int length){
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return crc.getValue();
+    }
+}
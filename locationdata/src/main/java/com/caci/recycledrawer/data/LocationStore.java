@@ -0,0 +1,1029 @@
+package com.caci.recycledrawer.data;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Column oriented store of every loaded location.  State names are kept once in a sorted
+ * dictionary, and cities are kept as parallel primitive columns:
+ *   - stateId: index into the state dictionary
+ *   - name offsets: where each city name starts in a shared char pool
+ *   - latitude, longitude, population, rank and growth
+ *   - key offsets: where each city's search key starts in a second char pool.  Keys are the
+ *     names folded by SearchKeys, computed once while building so searches never fold a name
+ *   - sort keys: the names' collation keys for each locale the store has been sorted for, see
+ *     SortKeys.  Built once per name and locale, so sorting again only compares stored bytes
+ * Cities are grouped by state and sorted by name within each state, so a state's cities are one
+ * contiguous range of rows that adapters can read from directly through a CitySlice.  Names are
+ * sorted with a LocationCollator when one is given to the Builder, otherwise by char value.
+ * State ids and city rows are dense ids assigned when the store is built, and are the same every
+ * time the same data is loaded with the same collator, so they double as stable item ids.
+ *
+ * Columns are buffers: a built store wraps heap arrays, and a store read with readColumns is
+ * views of the buffer it was read from, so a store read from the mapped LocationIndex answers
+ * straight from the file with nothing copied onto the heap.  Only absolute gets are used on the
+ * columns, so any number of threads can read them.
+ */
+public class LocationStore {
+
+    /**
+     * Sorted state names
+     */
+    private final String[] mStateNames;
+
+    /**
+     * State ids by name.  States may be in collation order, so they can't be binary searched
+     */
+    private final Map<String, Integer> mStateIds;
+
+    /**
+     * First city row of each state, plus one extra entry holding the total city count
+     */
+    private final int[] mStateStart;
+
+    /**
+     * City columns, one entry per city row
+     */
+    private final int mCityCount;
+    private final IntBuffer mStateId;
+    private final IntBuffer mNameOffset;
+    private final DoubleBuffer mLatitude;
+    private final DoubleBuffer mLongitude;
+    private final IntBuffer mPopulation;
+    private final IntBuffer mRank;
+    private final IntBuffer mGrowth;
+
+    /**
+     * Every city name back to back.  City i is the chars from mNameOffset[i] to mNameOffset[i+1]
+     */
+    private final CharBuffer mNamePool;
+
+    /**
+     * Search keys, same layout as the names.  City i's key is the chars from mKeyOffset[i] to
+     * mKeyOffset[i+1] of mKeyPool
+     */
+    private final IntBuffer mKeyOffset;
+    private final CharBuffer mKeyPool;
+
+    /**
+     * Search key of each state
+     */
+    private final String[] mStateKeys;
+
+    /**
+     * Collation keys for each locale the store has keys for, in row order
+     */
+    private final SortKeys[] mSortKeys;
+
+    /**
+     * Constructor, columns must already be grouped and sorted.  Use a Builder to create a store
+     */
+    LocationStore(String[] stateNames, String[] stateKeys, int[] stateStart, IntBuffer stateId,
+                  IntBuffer nameOffset, CharBuffer namePool, IntBuffer keyOffset,
+                  CharBuffer keyPool, DoubleBuffer latitude, DoubleBuffer longitude,
+                  IntBuffer population, IntBuffer rank, IntBuffer growth, SortKeys[] sortKeys){
+        mStateNames = stateNames;
+        mStateKeys = stateKeys;
+        mStateIds = new HashMap<>();
+        for(int i=0; i<stateNames.length; i++){
+            mStateIds.put(stateNames[i], i);
+        }
+        mStateStart = stateStart;
+        mCityCount = stateStart[stateNames.length];
+        mStateId = stateId;
+        mNameOffset = nameOffset;
+        mNamePool = namePool;
+        mKeyOffset = keyOffset;
+        mKeyPool = keyPool;
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mPopulation = population;
+        mRank = rank;
+        mGrowth = growth;
+        mSortKeys = sortKeys;
+    }
+
+    /**
+     * Constructor for a store built on the heap
+     */
+    LocationStore(String[] stateNames, String[] stateKeys, int[] stateStart, int[] stateId,
+                  int[] nameOffset, char[] namePool, int[] keyOffset, char[] keyPool,
+                  double[] latitude, double[] longitude, int[] population, int[] rank,
+                  int[] growth, SortKeys[] sortKeys){
+        this(stateNames, stateKeys, stateStart, IntBuffer.wrap(stateId),
+                IntBuffer.wrap(nameOffset), CharBuffer.wrap(namePool), IntBuffer.wrap(keyOffset),
+                CharBuffer.wrap(keyPool), DoubleBuffer.wrap(latitude),
+                DoubleBuffer.wrap(longitude), IntBuffer.wrap(population), IntBuffer.wrap(rank),
+                IntBuffer.wrap(growth), sortKeys);
+    }
+
+    /**
+     * Get the store with collation keys for one more locale, sharing this store's columns.
+     * Sorting the store for that locale later only compares the keys
+     * @param collator collator to build the keys with
+     * @return this store if it already has keys for the collator's locale, otherwise a copy
+     * with them
+     */
+    public LocationStore withSortKeys(LocationCollator collator){
+        if(getSortKeys(collator.getLocale().toString()) != null){
+            return this;
+        }
+        SortKeys[] sortKeys = Arrays.copyOf(mSortKeys, mSortKeys.length + 1);
+        sortKeys[mSortKeys.length] = buildSortKeys(collator);
+        return new LocationStore(mStateNames, mStateKeys, mStateStart, mStateId, mNameOffset,
+                mNamePool, mKeyOffset, mKeyPool, mLatitude, mLongitude, mPopulation, mRank,
+                mGrowth, sortKeys);
+    }
+
+    /**
+     * Get the collation keys the store has for a locale
+     * @param locale the locale's toString, such as en_US
+     * @return the keys, in row order, or null if the store has none for the locale
+     */
+    public SortKeys getSortKeys(String locale){
+        for(SortKeys sortKeys : mSortKeys){
+            if(sortKeys.getLocale().equals(locale)){
+                return sortKeys;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Key every state and city name for a collator
+     */
+    private SortKeys buildSortKeys(LocationCollator collator){
+        String[] cityNames = new String[mCityCount];
+        for(int i=0; i<mCityCount; i++){
+            cityNames[i] = getCityName(i);
+        }
+        return SortKeys.build(collator, mStateNames, cityNames);
+    }
+
+    /**
+     * Copy the store onto the heap with its states and cities sorted for another collator, for
+     * a store read from an index sorted for a different locale.  The stored collation keys for
+     * the collator's locale are compared, they're only built if the store has none for it, and
+     * then go with the copy.  Search keys don't depend on the locale, so they're copied rather
+     * than folded again
+     * @param pool pool to sort the states' cities on in parallel, or null to sort on this thread
+     * @param collator collator to sort names with
+     * @return the sorted copy
+     */
+    public LocationStore sortedCopy(ForkJoinPool pool, LocationCollator collator){
+        LocationStore keyed = withSortKeys(collator);
+        final SortKeys sortKeys = keyed.getSortKeys(collator.getLocale().toString());
+        int cities = mCityCount;
+        int stateCount = mStateNames.length;
+        int[] stateOrder = sortStates(sortKeys, stateCount);
+        int[] sortedId = new int[stateCount];
+        String[] stateNames = new String[stateCount];
+        String[] stateKeys = new String[stateCount];
+        for(int i=0; i<stateCount; i++){
+            int state = stateOrder[i];
+            sortedId[state] = i;
+            stateNames[i] = mStateNames[state];
+            stateKeys[i] = mStateKeys[state];
+        }
+
+        final int[] rowStateId = new int[cities];
+        for(int i=0; i<cities; i++){
+            rowStateId[i] = sortedId[mStateId.get(i)];
+        }
+        CityGrouper grouper = new CityGrouper(rowStateId, cities, stateCount,
+                new CityGrouper.RowComparator() {
+                    @Override
+                    public int compare(int a, int b) {
+                        return sortKeys.compareCities(a, b);
+                    }
+                });
+        grouper.group(pool);
+        int[] order = grouper.getOrder();
+
+        int[] stateId = new int[cities];
+        int[] nameOffset = new int[cities + 1];
+        char[] namePool = new char[mNameOffset.get(cities)];
+        int[] keyOffset = new int[cities + 1];
+        char[] keyPool = new char[mKeyOffset.get(cities)];
+        double[] latitude = new double[cities];
+        double[] longitude = new double[cities];
+        int[] population = new int[cities];
+        int[] rank = new int[cities];
+        int[] growth = new int[cities];
+        int nameSize = 0;
+        int keySize = 0;
+        for(int i=0; i<cities; i++){
+            int row = order[i];
+            stateId[i] = rowStateId[row];
+            nameOffset[i] = nameSize;
+            keyOffset[i] = keySize;
+            getChars(mNamePool, getNameOffset(row), getNameLength(row), namePool, nameSize);
+            getChars(mKeyPool, getKeyOffset(row), getKeyLength(row), keyPool, keySize);
+            nameSize += getNameLength(row);
+            keySize += getKeyLength(row);
+            latitude[i] = mLatitude.get(row);
+            longitude[i] = mLongitude.get(row);
+            population[i] = mPopulation.get(row);
+            rank[i] = mRank.get(row);
+            growth[i] = mGrowth.get(row);
+        }
+        nameOffset[cities] = nameSize;
+        keyOffset[cities] = keySize;
+
+        SortKeys[] sortedKeys = new SortKeys[keyed.mSortKeys.length];
+        for(int i=0; i<sortedKeys.length; i++){
+            sortedKeys[i] = keyed.mSortKeys[i].reorder(stateOrder, order);
+        }
+        return new LocationStore(stateNames, stateKeys, grouper.getStateStart(), stateId,
+                nameOffset, namePool, keyOffset, keyPool, latitude, longitude, population, rank,
+                growth, sortedKeys);
+    }
+
+    /**
+     * Sort state ids by their collation keys, states with equal keys keep their order
+     * @return sorted position i holds state id order[i]
+     */
+    private static int[] sortStates(final SortKeys sortKeys, int stateCount){
+        Integer[] states = new Integer[stateCount];
+        for(int i=0; i<stateCount; i++){
+            states[i] = i;
+        }
+        Arrays.sort(states, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return sortKeys.compareStates(a, b);
+            }
+        });
+        int[] order = new int[stateCount];
+        for(int i=0; i<stateCount; i++){
+            order[i] = states[i];
+        }
+        return order;
+    }
+
+    /**
+     * Copy chars out of a name or key pool
+     * @param pool pool to copy from
+     * @param offset start of the chars in the pool
+     * @param length number of chars
+     * @param dst array to copy to
+     * @param dstOffset where to put them in dst
+     */
+    public static void getChars(CharBuffer pool, int offset, int length, char[] dst, int dstOffset){
+        for(int i=0; i<length; i++){
+            dst[dstOffset + i] = pool.get(offset + i);
+        }
+    }
+
+    /**
+     * Get the number of bytes writeColumns writes
+     * @return size in bytes
+     */
+    int getColumnsSize(){
+        int cities = mCityCount;
+        int size = align(16 + stringsSize(mStateNames) + stringsSize(mStateKeys));
+        size += align(4 * mStateStart.length);
+        size += align(4 * cities);
+        size += 2 * align(4 * (cities + 1));
+        size += 2 * align(8 * cities);
+        size += 3 * align(4 * cities);
+        size += align(2 * mNameOffset.get(cities)) + align(2 * mKeyOffset.get(cities));
+        size += 8;
+        for(SortKeys sortKeys : mSortKeys){
+            size += align(8 + 2 * sortKeys.getLocale().length() + bytesSize(sortKeys.getStateKeys()));
+            size += align(4 * (cities + 1)) + align(sortKeys.getPoolSize());
+        }
+        return size;
+    }
+
+    /**
+     * Write every column to a buffer, in the buffer's byte order, for readColumns to read back.
+     * Each column starts on an 8 byte boundary of the buffer so it can be read back as a view
+     * @param buffer buffer positioned on an 8 byte boundary, with getColumnsSize bytes remaining
+     */
+    void writeColumns(ByteBuffer buffer){
+        int cities = mCityCount;
+        int nameChars = mNameOffset.get(cities);
+        int keyChars = mKeyOffset.get(cities);
+        align(buffer);
+        buffer.putInt(mStateNames.length);
+        buffer.putInt(cities);
+        buffer.putInt(nameChars);
+        buffer.putInt(keyChars);
+        putStrings(buffer, mStateNames);
+        putStrings(buffer, mStateKeys);
+        align(buffer);
+        buffer.asIntBuffer().put(mStateStart);
+        skip(buffer, 4 * mStateStart.length);
+        putInts(buffer, mStateId, cities);
+        putInts(buffer, mNameOffset, cities + 1);
+        putInts(buffer, mKeyOffset, cities + 1);
+        putDoubles(buffer, mLatitude, cities);
+        putDoubles(buffer, mLongitude, cities);
+        putInts(buffer, mPopulation, cities);
+        putInts(buffer, mRank, cities);
+        putInts(buffer, mGrowth, cities);
+        putChars(buffer, mNamePool, nameChars);
+        putChars(buffer, mKeyPool, keyChars);
+
+        // Each locale's collation keys: pool size, locale, state keys, then the city columns
+        align(buffer);
+        buffer.putInt(mSortKeys.length);
+        for(SortKeys sortKeys : mSortKeys){
+            align(buffer);
+            buffer.putInt(sortKeys.getPoolSize());
+            putStrings(buffer, new String[]{sortKeys.getLocale()});
+            putBytes(buffer, sortKeys.getStateKeys());
+            putInts(buffer, sortKeys.getOffsets(), cities + 1);
+            align(buffer);
+            ByteBuffer pool = sortKeys.getPool().duplicate();
+            pool.clear();
+            pool.limit(sortKeys.getPoolSize());
+            buffer.put(pool);
+        }
+        align(buffer);
+    }
+
+    /**
+     * Read a store written by writeColumns.  Nothing is sorted, folded or copied: the city
+     * columns are views of the buffer, which must have the byte order they were written in
+     * @param buffer buffer positioned at the columns
+     * @return the store
+     * @throws java.nio.BufferUnderflowException if the buffer is too short, and other runtime
+     * exceptions if it doesn't hold columns
+     */
+    static LocationStore readColumns(ByteBuffer buffer){
+        align(buffer);
+        int states = buffer.getInt();
+        int cities = buffer.getInt();
+        int nameChars = buffer.getInt();
+        int keyChars = buffer.getInt();
+        if(states < 0 || cities < 0 || nameChars < 0 || keyChars < 0){
+            throw new IllegalArgumentException("Negative column size");
+        }
+        String[] stateNames = getStrings(buffer, states);
+        String[] stateKeys = getStrings(buffer, states);
+        int[] stateStart = new int[states + 1];
+        column(buffer, 4L * stateStart.length).asIntBuffer().get(stateStart);
+        IntBuffer stateId = column(buffer, 4L * cities).asIntBuffer();
+        IntBuffer nameOffset = column(buffer, 4L * (cities + 1)).asIntBuffer();
+        IntBuffer keyOffset = column(buffer, 4L * (cities + 1)).asIntBuffer();
+        DoubleBuffer latitude = column(buffer, 8L * cities).asDoubleBuffer();
+        DoubleBuffer longitude = column(buffer, 8L * cities).asDoubleBuffer();
+        IntBuffer population = column(buffer, 4L * cities).asIntBuffer();
+        IntBuffer rank = column(buffer, 4L * cities).asIntBuffer();
+        IntBuffer growth = column(buffer, 4L * cities).asIntBuffer();
+        CharBuffer namePool = column(buffer, 2L * nameChars).asCharBuffer();
+        CharBuffer keyPool = column(buffer, 2L * keyChars).asCharBuffer();
+        align(buffer);
+        if(stateStart[states] != cities || nameOffset.get(cities) != nameChars
+                || keyOffset.get(cities) != keyChars){
+            throw new IllegalArgumentException("Column sizes don't match");
+        }
+
+        int sortKeyCount = buffer.getInt();
+        if(sortKeyCount < 0 || sortKeyCount > buffer.remaining()){
+            throw new IllegalArgumentException("Bad sort key count");
+        }
+        SortKeys[] sortKeys = new SortKeys[sortKeyCount];
+        for(int i=0; i<sortKeyCount; i++){
+            align(buffer);
+            int poolSize = buffer.getInt();
+            if(poolSize < 0){
+                throw new IllegalArgumentException("Negative sort key size");
+            }
+            String locale = getStrings(buffer, 1)[0];
+            byte[][] stateSortKeys = getBytes(buffer, states);
+            IntBuffer offsets = column(buffer, 4L * (cities + 1)).asIntBuffer();
+            ByteBuffer pool = column(buffer, poolSize);
+            if(offsets.get(cities) != poolSize){
+                throw new IllegalArgumentException("Sort key sizes don't match");
+            }
+            sortKeys[i] = new SortKeys(locale, stateSortKeys, offsets, pool);
+        }
+        align(buffer);
+        return new LocationStore(stateNames, stateKeys, stateStart, stateId, nameOffset, namePool,
+                keyOffset, keyPool, latitude, longitude, population, rank, growth, sortKeys);
+    }
+
+    /**
+     * Round a size up to a multiple of 8 bytes
+     */
+    static int align(int size){
+        return (size + 7) & ~7;
+    }
+
+    /**
+     * Move a buffer up to the next 8 byte boundary
+     */
+    static void align(ByteBuffer buffer){
+        skip(buffer, align(buffer.position()) - buffer.position());
+    }
+
+    /**
+     * Move a buffer past the values just copied through one of its views
+     */
+    private static void skip(ByteBuffer buffer, int bytes){
+        buffer.position(buffer.position() + bytes);
+    }
+
+    /**
+     * Take the next column of a buffer as a buffer of its own, and move past it
+     * @param buffer buffer positioned at or before the column's 8 byte boundary
+     * @param bytes size of the column
+     * @return the column, in the buffer's byte order
+     */
+    private static ByteBuffer column(ByteBuffer buffer, long bytes){
+        align(buffer);
+        if(bytes > buffer.remaining()){
+            throw new BufferUnderflowException();
+        }
+        ByteBuffer column = buffer.slice();
+        column.order(buffer.order());
+        column.limit((int) bytes);
+        skip(buffer, (int) bytes);
+        return column;
+    }
+
+    private static void putInts(ByteBuffer buffer, IntBuffer column, int count){
+        align(buffer);
+        IntBuffer values = column.duplicate();
+        values.limit(count);
+        buffer.asIntBuffer().put(values);
+        skip(buffer, 4 * count);
+    }
+
+    private static void putDoubles(ByteBuffer buffer, DoubleBuffer column, int count){
+        align(buffer);
+        DoubleBuffer values = column.duplicate();
+        values.limit(count);
+        buffer.asDoubleBuffer().put(values);
+        skip(buffer, 8 * count);
+    }
+
+    private static void putChars(ByteBuffer buffer, CharBuffer column, int count){
+        align(buffer);
+        CharBuffer values = column.duplicate();
+        values.limit(count);
+        buffer.asCharBuffer().put(values);
+        skip(buffer, 2 * count);
+    }
+
+    /**
+     * Strings are written as a char count followed by the chars
+     */
+    private static int stringsSize(String[] strings){
+        int size = 0;
+        for(String string : strings){
+            size += 4 + 2 * string.length();
+        }
+        return size;
+    }
+
+    private static void putStrings(ByteBuffer buffer, String[] strings){
+        for(String string : strings){
+            buffer.putInt(string.length());
+            for(int i=0; i<string.length(); i++){
+                buffer.putChar(string.charAt(i));
+            }
+        }
+    }
+
+    /**
+     * Byte arrays are written as a byte count followed by the bytes
+     */
+    private static int bytesSize(byte[][] arrays){
+        int size = 0;
+        for(byte[] array : arrays){
+            size += 4 + array.length;
+        }
+        return size;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[][] arrays){
+        for(byte[] array : arrays){
+            buffer.putInt(array.length);
+            buffer.put(array);
+        }
+    }
+
+    private static byte[][] getBytes(ByteBuffer buffer, int count){
+        byte[][] arrays = new byte[count][];
+        for(int i=0; i<count; i++){
+            int length = buffer.getInt();
+            if(length < 0 || length > buffer.remaining()){
+                throw new BufferUnderflowException();
+            }
+            arrays[i] = new byte[length];
+            buffer.get(arrays[i]);
+        }
+        return arrays;
+    }
+
+    private static String[] getStrings(ByteBuffer buffer, int count){
+        String[] strings = new String[count];
+        for(int i=0; i<count; i++){
+            int length = buffer.getInt();
+            if(length < 0 || 2L * length > buffer.remaining()){
+                throw new BufferUnderflowException();
+            }
+            char[] chars = new char[length];
+            buffer.asCharBuffer().get(chars);
+            skip(buffer, 2 * length);
+            strings[i] = new String(chars);
+        }
+        return strings;
+    }
+
+    /**
+     * State getters
+     */
+    public int getStateCount(){
+        return mStateNames.length;
+    }
+
+    public String[] getStateNames(){
+        return mStateNames.clone();
+    }
+
+    public String getStateName(int state){
+        return mStateNames[state];
+    }
+
+    public String getStateKey(int state){
+        return mStateKeys[state];
+    }
+
+    /**
+     * Find a state by name
+     * @param name state name
+     * @return state id, or -1 if there is no such state
+     */
+    public int findState(String name){
+        Integer state = mStateIds.get(name);
+        return state == null ? -1 : state;
+    }
+
+    /**
+     * Get the cities belonging to a state
+     * @param state state id
+     * @return view of the state's cities, sorted by name
+     */
+    public CitySlice getCities(int state){
+        return new CitySlice(this, state, mStateStart[state], mStateStart[state + 1]);
+    }
+
+    /**
+     * Get the cities belonging to a state
+     * @param name state name
+     * @return view of the state's cities, empty if there's no such state
+     */
+    public CitySlice getCitiesByState(String name){
+        int state = findState(name);
+        if(state < 0){
+            return new CitySlice(this, -1, 0, 0);
+        }
+        return getCities(state);
+    }
+
+    /**
+     * City getters
+     * @param city city row
+     */
+    public int getCityCount(){
+        return mCityCount;
+    }
+
+    public int getStateId(int city){
+        return mStateId.get(city);
+    }
+
+    public String getCityName(int city){
+        char[] name = new char[getNameLength(city)];
+        getChars(mNamePool, getNameOffset(city), name.length, name, 0);
+        return new String(name);
+    }
+
+    /**
+     * Get the pool every city name is in.  Read it with absolute gets only, it's shared
+     * @return the name pool
+     */
+    public CharBuffer getNamePool(){
+        return mNamePool;
+    }
+
+    public int getNameOffset(int city){
+        return mNameOffset.get(city);
+    }
+
+    public int getNameLength(int city){
+        return mNameOffset.get(city + 1) - mNameOffset.get(city);
+    }
+
+    /**
+     * Search key getters, the city name as folded by SearchKeys.  The key pool is shared like
+     * the name pool, read it with absolute gets only
+     * @param city city row
+     */
+    public CharBuffer getKeyPool(){
+        return mKeyPool;
+    }
+
+    public int getKeyOffset(int city){
+        return mKeyOffset.get(city);
+    }
+
+    public int getKeyLength(int city){
+        return mKeyOffset.get(city + 1) - mKeyOffset.get(city);
+    }
+
+    public double getLatitude(int city){
+        return mLatitude.get(city);
+    }
+
+    public double getLongitude(int city){
+        return mLongitude.get(city);
+    }
+
+    public int getPopulation(int city){
+        return mPopulation.get(city);
+    }
+
+    public int getRank(int city){
+        return mRank.get(city);
+    }
+
+    /**
+     * Get a city's growth from 2000 to 2013
+     * @param city city row
+     * @return growth in tenths of a percent, or Location.GROWTH_UNKNOWN
+     */
+    public int getGrowth(int city){
+        return mGrowth.get(city);
+    }
+
+    /**
+     * Check whether the columns are read from a direct buffer, such as the mapped index, rather
+     * than from arrays on the heap
+     * @return true if the city columns aren't on the heap
+     */
+    public boolean isMapped(){
+        return mNamePool.isDirect();
+    }
+
+    /**
+     * A state's cities: rows start (inclusive) to end (exclusive) of the store.  Shares the
+     * store's columns, nothing is copied
+     * ------------------------------------------------------------------------------------
+     */
+    public static class CitySlice {
+
+        private final LocationStore mStore;
+        private final int mState;
+        private final int mStart;
+        private final int mEnd;
+
+        CitySlice(LocationStore store, int state, int start, int end){
+            mStore = store;
+            mState = state;
+            mStart = start;
+            mEnd = end;
+        }
+
+        /**
+         * Get the number of cities in the slice
+         * @return city count
+         */
+        public int size(){
+            return mEnd - mStart;
+        }
+
+        /**
+         * Convert a position in the slice into a city row of the store
+         * @param position position in the slice
+         * @return city row
+         */
+        public int getCity(int position){
+            return mStart + position;
+        }
+
+        /**
+         * Getters
+         * @return
+         */
+        public LocationStore getStore(){
+            return mStore;
+        }
+
+        public int getState(){
+            return mState;
+        }
+
+        public int getStart(){
+            return mStart;
+        }
+
+        public String getStateName(){
+            return mState < 0 ? "" : mStore.getStateName(mState);
+        }
+
+        public CharBuffer getNamePool(){
+            return mStore.getNamePool();
+        }
+
+        public int getNameOffset(int position){
+            return mStore.getNameOffset(mStart + position);
+        }
+
+        public int getNameLength(int position){
+            return mStore.getNameLength(mStart + position);
+        }
+
+        public String getName(int position){
+            return mStore.getCityName(mStart + position);
+        }
+    }
+
+    /**
+     * Collects locations in any order and builds a grouped and sorted LocationStore
+     * ------------------------------------------------------------------------------
+     */
+    public static class Builder {
+
+        /**
+         * State dictionary in the order states were first seen
+         */
+        private Map<String, Integer> mStateIds = new HashMap<>();
+        private String[] mStateNames = new String[64];
+
+        /**
+         * City columns in the order cities were added
+         */
+        private int mCount;
+        private int[] mStateId;
+        private int[] mNameOffset;
+        private double[] mLatitude;
+        private double[] mLongitude;
+        private int[] mPopulation;
+        private int[] mRank;
+        private int[] mGrowth;
+        private char[] mNamePool;
+        private int mPoolSize;
+
+        /**
+         * Constructor
+         */
+        public Builder(){
+            this(1024);
+        }
+
+        /**
+         * Constructor
+         * @param capacity expected number of cities
+         */
+        public Builder(int capacity){
+            capacity = Math.max(capacity, 16);
+            mStateId = new int[capacity];
+            mNameOffset = new int[capacity + 1];
+            mLatitude = new double[capacity];
+            mLongitude = new double[capacity];
+            mPopulation = new int[capacity];
+            mRank = new int[capacity];
+            mGrowth = new int[capacity];
+            mNamePool = new char[capacity * 12];
+        }
+
+        /**
+         * Add a location
+         * @param location location to add
+         */
+        public void add(Location location){
+            add(location.getState(), location.getCity(), location.getLat(), location.getLon(),
+                    location.getPopulation(), location.getRank(), location.getGrowth());
+        }
+
+        /**
+         * Add a location
+         * @param state state name
+         * @param city city name
+         * @param latitude latitude
+         * @param longitude longitude
+         * @param population population
+         * @param rank rank by population
+         * @param growth growth in tenths of a percent
+         */
+        public void add(String state, String city, double latitude, double longitude,
+                        int population, int rank, int growth){
+            if(mCount == mStateId.length){
+                grow();
+            }
+            Integer stateId = mStateIds.get(state);
+            if(stateId == null){
+                stateId = mStateIds.size();
+                if(stateId == mStateNames.length){
+                    mStateNames = Arrays.copyOf(mStateNames, stateId * 2);
+                }
+                mStateNames[stateId] = state;
+                mStateIds.put(state, stateId);
+            }
+            if(mPoolSize + city.length() > mNamePool.length){
+                mNamePool = Arrays.copyOf(mNamePool, Math.max(mNamePool.length * 2, mPoolSize + city.length()));
+            }
+            city.getChars(0, city.length(), mNamePool, mPoolSize);
+
+            mStateId[mCount] = stateId;
+            mNameOffset[mCount] = mPoolSize;
+            mLatitude[mCount] = latitude;
+            mLongitude[mCount] = longitude;
+            mPopulation[mCount] = population;
+            mRank[mCount] = rank;
+            mGrowth[mCount] = growth;
+            mPoolSize += city.length();
+            mCount++;
+            mNameOffset[mCount] = mPoolSize;
+        }
+
+        /**
+         * Get the number of distinct states added so far
+         * @return state count
+         */
+        public int getStateCount(){
+            return mStateIds.size();
+        }
+
+        /**
+         * Get the names of the states added so far, sorted
+         * @param collator collator to sort with, or null to sort by char value
+         * @return sorted state names
+         */
+        public String[] getSortedStateNames(LocationCollator collator){
+            String[] names = Arrays.copyOf(mStateNames, mStateIds.size());
+            if(collator != null){
+                collator.sort(names);
+            } else{
+                Arrays.sort(names);
+            }
+            return names;
+        }
+
+        /**
+         * Sort the states, group the cities by state and sort each state's cities by name
+         * @return the store
+         */
+        public LocationStore build(){
+            return build(null, null);
+        }
+
+        /**
+         * Sort the states, group the cities by state and sort each state's cities by name
+         * @param pool pool to sort the states' cities on in parallel, or null to sort on this
+         *             thread
+         * @param collator collator to sort names with, or null to sort by char value
+         * @return the store
+         */
+        public LocationStore build(ForkJoinPool pool, LocationCollator collator){
+            int stateCount = mStateIds.size();
+            String[] addedStates = Arrays.copyOf(mStateNames, stateCount);
+
+            // Key every name once, the sorts only compare keys and the store keeps them
+            final SortKeys sortKeys;
+            int[] stateOrder;
+            if(collator != null){
+                String[] cityNames = new String[mCount];
+                for(int i=0; i<mCount; i++){
+                    cityNames[i] = new String(mNamePool, mNameOffset[i],
+                            mNameOffset[i + 1] - mNameOffset[i]);
+                }
+                sortKeys = SortKeys.build(collator, addedStates, cityNames);
+                stateOrder = sortStates(sortKeys, stateCount);
+            } else{
+                sortKeys = null;
+                String[] sorted = getSortedStateNames(null);
+                stateOrder = new int[stateCount];
+                for(int i=0; i<stateCount; i++){
+                    stateOrder[i] = mStateIds.get(sorted[i]);
+                }
+            }
+
+            // Map the order states were first seen in to sorted order
+            String[] stateNames = new String[stateCount];
+            int[] sortedId = new int[stateCount];
+            for(int i=0; i<stateCount; i++){
+                stateNames[i] = addedStates[stateOrder[i]];
+                sortedId[stateOrder[i]] = i;
+            }
+            final int[] rowStateId = new int[mCount];
+            for(int i=0; i<mCount; i++){
+                rowStateId[i] = sortedId[mStateId[i]];
+            }
+
+            CityGrouper.RowComparator comparator;
+            if(sortKeys != null){
+                comparator = new CityGrouper.RowComparator() {
+                    @Override
+                    public int compare(int a, int b) {
+                        return sortKeys.compareCities(a, b);
+                    }
+                };
+            } else{
+                comparator = new CityGrouper.RowComparator() {
+                    @Override
+                    public int compare(int a, int b) {
+                        return compareNames(a, b);
+                    }
+                };
+            }
+            CityGrouper grouper = new CityGrouper(rowStateId, mCount, stateCount, comparator);
+            grouper.group(pool);
+            int[] order = grouper.getOrder();
+            int[] stateStart = grouper.getStateStart();
+
+            // Copy the columns into their final order
+            int[] stateId = new int[mCount];
+            int[] nameOffset = new int[mCount + 1];
+            char[] namePool = new char[mPoolSize];
+            double[] latitude = new double[mCount];
+            double[] longitude = new double[mCount];
+            int[] population = new int[mCount];
+            int[] rank = new int[mCount];
+            int[] growth = new int[mCount];
+            int poolSize = 0;
+            for(int i=0; i<mCount; i++){
+                int row = order[i];
+                int length = mNameOffset[row + 1] - mNameOffset[row];
+                System.arraycopy(mNamePool, mNameOffset[row], namePool, poolSize, length);
+                stateId[i] = rowStateId[row];
+                nameOffset[i] = poolSize;
+                latitude[i] = mLatitude[row];
+                longitude[i] = mLongitude[row];
+                population[i] = mPopulation[row];
+                rank[i] = mRank[row];
+                growth[i] = mGrowth[row];
+                poolSize += length;
+            }
+            nameOffset[mCount] = poolSize;
+
+            // Fold every name into its search key once, so searching never has to
+            StringBuilder keys = new StringBuilder(poolSize);
+            int[] keyOffset = new int[mCount + 1];
+            for(int i=0; i<mCount; i++){
+                keyOffset[i] = keys.length();
+                SearchKeys.fold(namePool, nameOffset[i], nameOffset[i + 1] - nameOffset[i], keys);
+            }
+            keyOffset[mCount] = keys.length();
+            char[] keyPool = new char[keys.length()];
+            keys.getChars(0, keys.length(), keyPool, 0);
+            String[] stateKeys = new String[stateCount];
+            for(int i=0; i<stateCount; i++){
+                stateKeys[i] = SearchKeys.fold(stateNames[i]);
+            }
+
+            SortKeys[] storeKeys = sortKeys != null
+                    ? new SortKeys[]{sortKeys.reorder(stateOrder, order)} : new SortKeys[0];
+            return new LocationStore(stateNames, stateKeys, stateStart, stateId, nameOffset,
+                    namePool, keyOffset, keyPool, latitude, longitude, population, rank, growth,
+                    storeKeys);
+        }
+
+        /**
+         * Compare two city names char by char, the same ordering as String.compareTo
+         */
+        private int compareNames(int a, int b){
+            int aStart = mNameOffset[a];
+            int aLength = mNameOffset[a + 1] - aStart;
+            int bStart = mNameOffset[b];
+            int bLength = mNameOffset[b + 1] - bStart;
+            int length = Math.min(aLength, bLength);
+            for(int i=0; i<length; i++){
+                char aChar = mNamePool[aStart + i];
+                char bChar = mNamePool[bStart + i];
+                if(aChar != bChar){
+                    return aChar - bChar;
+                }
+            }
+            return aLength - bLength;
+        }
+
+        /**
+         * Grow every city column
+         */
+        private void grow(){
+            int capacity = mStateId.length * 2;
+            mStateId = Arrays.copyOf(mStateId, capacity);
+            mNameOffset = Arrays.copyOf(mNameOffset, capacity + 1);
+            mLatitude = Arrays.copyOf(mLatitude, capacity);
+            mLongitude = Arrays.copyOf(mLongitude, capacity);
+            mPopulation = Arrays.copyOf(mPopulation, capacity);
+            mRank = Arrays.copyOf(mRank, capacity);
+            mGrowth = Arrays.copyOf(mGrowth, capacity);
+        }
+    }
+}
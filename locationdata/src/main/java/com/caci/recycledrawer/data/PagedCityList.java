@@ -0,0 +1,277 @@
+package com.caci.recycledrawer.data;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * A state's cities loaded a fixed size page at a time, for states too big to keep in memory.
+ *   - getPage returns the page holding a city, or null and starts loading it in the background.
+ *     The row shows a placeholder until the page arrives
+ *   - onViewport is told which cities are on screen.  Pages up to PREFETCH_PAGES ahead of and
+ *     behind the screen are loaded before they're scrolled to, and pages more than KEEP_PAGES
+ *     further away are evicted
+ *   - Evicted pages are reused for the next pages loaded
+ * So the names held in memory depend on the size of the screen, not the size of the state.
+ * Use from the main thread, pages are filled on the executor and handed back through the
+ * callback executor, which runs them on the main thread.
+ */
+public class PagedCityList {
+
+    /**
+     * Told when a page has loaded, on the main thread
+     */
+    public interface Listener {
+        void onPageLoaded(PagedCityList list, int start, int count);
+    }
+
+    /**
+     * Cities in a page, unless the list was made with another page size
+     */
+    public static final int PAGE_SIZE = 64;
+
+    /**
+     * Pages loaded ahead of the screen, and pages kept beyond those before they're evicted
+     */
+    private static final int PREFETCH_PAGES = 2;
+    private static final int KEEP_PAGES = 2;
+
+    /**
+     * Most evicted pages kept for reuse
+     */
+    private static final int MAX_FREE_PAGES = 4;
+
+    private final CityPageSource mSource;
+    private final String mStateName;
+    private final int mPageSize;
+    private final Executor mExecutor;
+    private final Executor mCallbackExecutor;
+
+    /**
+     * Loaded pages and pages being loaded.  Only the few pages around the screen are ever in
+     * these, so they're searched by page start
+     */
+    private final ArrayList<CityPage> mPages = new ArrayList<>();
+    private final ArrayList<CityPage> mLoading = new ArrayList<>();
+
+    /**
+     * Evicted pages to reuse
+     */
+    private final ArrayDeque<CityPage> mFreePages = new ArrayDeque<>();
+
+    /**
+     * Pages on screen
+     */
+    private int mFirstVisiblePage;
+    private int mLastVisiblePage;
+
+    /**
+     * Incremented by release, so pages that finish loading afterwards are dropped
+     */
+    private int mGeneration;
+
+    private Listener mListener;
+
+    /**
+     * Constructor
+     * @param stateName name of the state the cities belong to
+     * @param source reads the pages
+     * @param executor background executor to read the pages on
+     * @param callbackExecutor executor running on the main thread, to hand loaded pages back on
+     */
+    public PagedCityList(String stateName, CityPageSource source, Executor executor,
+                         Executor callbackExecutor){
+        this(stateName, source, executor, callbackExecutor, PAGE_SIZE);
+    }
+
+    /**
+     * Constructor
+     * @param stateName name of the state the cities belong to
+     * @param source reads the pages
+     * @param executor background executor to read the pages on
+     * @param callbackExecutor executor running on the main thread, to hand loaded pages back on
+     * @param pageSize cities in a page
+     */
+    PagedCityList(String stateName, CityPageSource source, Executor executor,
+                  Executor callbackExecutor, int pageSize){
+        mStateName = stateName;
+        mSource = source;
+        mPageSize = pageSize;
+        mExecutor = executor;
+        mCallbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Get the page holding a city, loading it if it isn't loaded
+     * @param index position of the city in the list
+     * @return the page, or null until it's loaded
+     */
+    public CityPage getPage(int index){
+        int page = index / mPageSize;
+        CityPage loaded = find(mPages, page);
+        if(loaded == null){
+            // Rows are bound as they come on screen, which may be before onViewport hears of it
+            mFirstVisiblePage = Math.min(mFirstVisiblePage, page);
+            mLastVisiblePage = Math.max(mLastVisiblePage, page);
+            request(page);
+        }
+        return loaded;
+    }
+
+    /**
+     * Tell the list which cities are on screen, to load the pages around them and evict the
+     * pages far away
+     * @param first position of the first city on screen
+     * @param last position of the last city on screen
+     */
+    public void onViewport(int first, int last){
+        mFirstVisiblePage = Math.max(first, 0) / mPageSize;
+        mLastVisiblePage = Math.max(last, 0) / mPageSize;
+
+        for(int i=mPages.size() - 1; i>=0; i--){
+            if(!isKept(mPages.get(i).getStart() / mPageSize)){
+                recycle(mPages.remove(i));
+            }
+        }
+        for(int page=mFirstVisiblePage - PREFETCH_PAGES; page<=mLastVisiblePage + PREFETCH_PAGES; page++){
+            request(page);
+        }
+    }
+
+    /**
+     * Drop every page, for when the list isn't shown anymore.  Pages are loaded again as they're
+     * asked for
+     */
+    public void release(){
+        mGeneration++;
+        for(int i=0; i<mPages.size(); i++){
+            recycle(mPages.get(i));
+        }
+        mPages.clear();
+        // Pages still loading are recycled when they arrive
+        mLoading.clear();
+    }
+
+    /**
+     * Switch the order the cities are listed in.  Every page is dropped, and loaded again in the
+     * new order as it's asked for
+     * @param order rows of the source in the new order, as from CityOrderings.get, or null for
+     *              the source's own order
+     */
+    public void setOrder(int[] order){
+        release();
+        mSource.setOrder(order);
+    }
+
+    /**
+     * Start loading a page, unless it's loaded, loading or past the end of the list
+     * @param page page number
+     */
+    private void request(final int page){
+        if(page < 0 || page * mPageSize >= mSource.size() || find(mPages, page) != null
+                || find(mLoading, page) != null){
+            return;
+        }
+        final int generation = mGeneration;
+        final CityPage target = mFreePages.isEmpty() ? new CityPage(mPageSize) : mFreePages.poll();
+        // Start it empty at its position, so find knows it's loading
+        target.reset(page * mPageSize);
+        mLoading.add(target);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mSource.loadPage(page * mPageSize, target);
+                mCallbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(page, target, generation);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Keep a page that finished loading if it's still wanted.  Runs on the main thread
+     */
+    private void onPageLoaded(int page, CityPage loaded, int generation){
+        if(generation != mGeneration){
+            recycle(loaded);
+            return;
+        }
+        mLoading.remove(loaded);
+        if(!isKept(page)){
+            // Scrolled away while it was loading
+            recycle(loaded);
+            return;
+        }
+        mPages.add(loaded);
+        if(mListener != null){
+            mListener.onPageLoaded(this, loaded.getStart(), loaded.size());
+        }
+    }
+
+    /**
+     * Check whether a page is close enough to the screen to keep
+     */
+    private boolean isKept(int page){
+        return page >= mFirstVisiblePage - PREFETCH_PAGES - KEEP_PAGES
+                && page <= mLastVisiblePage + PREFETCH_PAGES + KEEP_PAGES;
+    }
+
+    /**
+     * Find a page by page number
+     */
+    private CityPage find(ArrayList<CityPage> pages, int page){
+        int start = page * mPageSize;
+        for(int i=0; i<pages.size(); i++){
+            if(pages.get(i).getStart() == start){
+                return pages.get(i);
+            }
+        }
+        return null;
+    }
+
+    private void recycle(CityPage page){
+        if(mFreePages.size() < MAX_FREE_PAGES){
+            mFreePages.add(page);
+        }
+    }
+
+    /**
+     * Get the number of cities
+     * @return city count
+     */
+    public int size(){
+        return mSource.size();
+    }
+
+    /**
+     * Get a city's row in the backing data, loaded or not
+     * @param index position of the city in the list
+     * @return row
+     */
+    public int getRow(int index){
+        return mSource.getRow(index);
+    }
+
+    /**
+     * Get the number of pages in memory
+     * @return loaded page count
+     */
+    public int getLoadedPageCount(){
+        return mPages.size();
+    }
+
+    /**
+     * Getters and setters
+     * @return
+     */
+    public String getStateName() {
+        return mStateName;
+    }
+
+    public void setListener(Listener listener) {
+        this.mListener = listener;
+    }
+}
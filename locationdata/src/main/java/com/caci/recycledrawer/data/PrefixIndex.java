@@ -0,0 +1,276 @@
+package com.caci.recycledrawer.data;
+
+import java.nio.CharBuffer;
+
+/**
+ * Search-as-you-type index over every state and city name in a LocationStore.  Rows are sorted
+ * by the search keys the store computed for them, so all the names whose key starts with the
+ * folded query are one contiguous range of the sorted rows:
+ *   - cities: an array of store rows sorted by key
+ *   - states: the state names sorted by key, with their keys
+ * A search is two binary searches per list for the start and end of the range, and the range
+ * is handed to DrawerRows as is, so results are never copied.  Search reuses its working
+ * buffers, so searches are serialized on the index.
+ */
+public class PrefixIndex {
+
+    /**
+     * Store the city rows belong to
+     */
+    private final LocationStore mStore;
+
+    /**
+     * City rows sorted by search key
+     */
+    private final int[] mCities;
+
+    /**
+     * State names sorted by key, their state ids and their keys
+     */
+    private final String[] mStateNames;
+    private final int[] mStateIds;
+    private final String[] mStateKeys;
+
+    /**
+     * Working buffers for the folded query
+     */
+    private StringBuilder mQuery = new StringBuilder();
+    private CharBuffer mKey = CharBuffer.allocate(32);
+
+    /**
+     * Constructor.  Use build to create an index
+     */
+    private PrefixIndex(LocationStore store, int[] cities, String[] stateNames, int[] stateIds,
+                        String[] stateKeys){
+        mStore = store;
+        mCities = cities;
+        mStateNames = stateNames;
+        mStateIds = stateIds;
+        mStateKeys = stateKeys;
+    }
+
+    /**
+     * Build the index for a store.  Sorts every city, so run it in the background
+     * @param store store to index
+     * @return the index
+     */
+    public static PrefixIndex build(final LocationStore store){
+        // Sort the cities as a single group
+        final CharBuffer keyPool = store.getKeyPool();
+        int cityCount = store.getCityCount();
+        CityGrouper grouper = new CityGrouper(new int[cityCount], cityCount, 1,
+                new CityGrouper.RowComparator() {
+                    @Override
+                    public int compare(int a, int b) {
+                        return compareKeys(keyPool, store.getKeyOffset(a), store.getKeyLength(a),
+                                keyPool, store.getKeyOffset(b), store.getKeyLength(b));
+                    }
+                });
+        grouper.group(null);
+
+        // Sort the states by their keys
+        int stateCount = store.getStateCount();
+        final String[] keys = new String[stateCount];
+        for(int i=0; i<stateCount; i++){
+            keys[i] = store.getStateKey(i);
+        }
+        CityGrouper stateGrouper = new CityGrouper(new int[stateCount], stateCount, 1,
+                new CityGrouper.RowComparator() {
+                    @Override
+                    public int compare(int a, int b) {
+                        return keys[a].compareTo(keys[b]);
+                    }
+                });
+        stateGrouper.group(null);
+        int[] stateOrder = stateGrouper.getOrder();
+        String[] stateNames = new String[stateCount];
+        String[] stateKeys = new String[stateCount];
+        for(int i=0; i<stateCount; i++){
+            stateNames[i] = store.getStateName(stateOrder[i]);
+            stateKeys[i] = keys[stateOrder[i]];
+        }
+
+        return new PrefixIndex(store, grouper.getOrder(), stateNames, stateOrder, stateKeys);
+    }
+
+    /**
+     * Find every state and city whose name starts with a prefix
+     * @param prefix prefix to search for, folded the same way as the names
+     * @return the matching ranges, empty for a prefix without letters or digits
+     */
+    public synchronized Match search(CharSequence prefix){
+        mQuery.setLength(0);
+        SearchKeys.fold(prefix, mQuery);
+        int length = mQuery.length();
+        if(length == 0){
+            return new Match(this, 0, 0, 0, 0);
+        }
+        if(length > mKey.capacity()){
+            mKey = CharBuffer.allocate(length * 2);
+        }
+        for(int i=0; i<length; i++){
+            mKey.put(i, mQuery.charAt(i));
+        }
+
+        // First row not before the prefix, then first row after every name with the prefix
+        int stateStart = searchStates(mKey, length, false);
+        int stateEnd = searchStates(mKey, length, true);
+        int cityStart = searchCities(mKey, length, false);
+        int cityEnd = searchCities(mKey, length, true);
+        return new Match(this, stateStart, stateEnd, cityStart, cityEnd);
+    }
+
+    /**
+     * Binary search the sorted states
+     * @param key folded prefix
+     * @param length length of the prefix
+     * @param after false to find the first state not before the prefix, true to find the first
+     *              state after every state starting with the prefix
+     * @return position in the sorted states
+     */
+    private int searchStates(CharBuffer key, int length, boolean after){
+        int low = 0;
+        int high = mStateKeys.length;
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            int cmp = comparePrefix(mStateKeys[mid], key, length);
+            if(cmp < 0 || (after && cmp == 0)){
+                low = mid + 1;
+            } else{
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Binary search the sorted cities
+     * @param key folded prefix
+     * @param length length of the prefix
+     * @param after false to find the first city not before the prefix, true to find the first
+     *              city after every city starting with the prefix
+     * @return position in the sorted cities
+     */
+    private int searchCities(CharBuffer key, int length, boolean after){
+        CharBuffer keyPool = mStore.getKeyPool();
+        int low = 0;
+        int high = mCities.length;
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            int city = mCities[mid];
+            int keyLength = Math.min(mStore.getKeyLength(city), length);
+            int cmp = compareKeys(keyPool, mStore.getKeyOffset(city), keyLength, key, 0, length);
+            if(cmp < 0 || (after && cmp == 0)){
+                low = mid + 1;
+            } else{
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compare the start of a folded name with a folded prefix
+     * @return less than 0 if the name comes before every name with the prefix, 0 if it starts
+     * with the prefix, more than 0 if it comes after
+     */
+    private static int comparePrefix(String name, CharBuffer key, int keyLength){
+        int length = Math.min(name.length(), keyLength);
+        for(int i=0; i<length; i++){
+            int diff = name.charAt(i) - key.get(i);
+            if(diff != 0){
+                return diff;
+            }
+        }
+        return name.length() < keyLength ? -1 : 0;
+    }
+
+    /**
+     * Compare two folded names by char value
+     */
+    private static int compareKeys(CharBuffer a, int aOffset, int aLength, CharBuffer b,
+                                   int bOffset, int bLength){
+        int length = Math.min(aLength, bLength);
+        for(int i=0; i<length; i++){
+            int diff = a.get(aOffset + i) - b.get(bOffset + i);
+            if(diff != 0){
+                return diff;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    /**
+     * Getters
+     * @return
+     */
+    public LocationStore getStore() {
+        return mStore;
+    }
+
+    public int[] getCities() {
+        return mCities;
+    }
+
+    public String[] getStateNames() {
+        return mStateNames;
+    }
+
+    /**
+     * The states and cities matching a search, as ranges of the index's sorted states and cities
+     * -------------------------------------------------------------------------------------------
+     */
+    public static class Match {
+
+        private final PrefixIndex mIndex;
+        private final int mStateStart;
+        private final int mStateEnd;
+        private final int mCityStart;
+        private final int mCityEnd;
+
+        Match(PrefixIndex index, int stateStart, int stateEnd, int cityStart, int cityEnd){
+            mIndex = index;
+            mStateStart = stateStart;
+            mStateEnd = stateEnd;
+            mCityStart = cityStart;
+            mCityEnd = cityEnd;
+        }
+
+        /**
+         * Get the matches as drawer rows, states first.  The rows read from the index's arrays
+         * @return the rows
+         */
+        public DrawerRows toRows(){
+            return DrawerRows.forSearch(mIndex.mStateNames, mIndex.mStateIds, mStateStart,
+                    mStateEnd, mIndex.mStore, mIndex.mCities, mCityStart, mCityEnd);
+        }
+
+        /**
+         * Getters
+         * @return
+         */
+        public int getStateCount(){
+            return mStateEnd - mStateStart;
+        }
+
+        public int getCityCount(){
+            return mCityEnd - mCityStart;
+        }
+
+        public int getStateStart() {
+            return mStateStart;
+        }
+
+        public int getStateEnd() {
+            return mStateEnd;
+        }
+
+        public int getCityStart() {
+            return mCityStart;
+        }
+
+        public int getCityEnd() {
+            return mCityEnd;
+        }
+    }
+}
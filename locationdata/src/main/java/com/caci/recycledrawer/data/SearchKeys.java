@@ -0,0 +1,125 @@
+package com.caci.recycledrawer.data;
+
+import java.nio.CharBuffer;
+import java.text.Normalizer;
+
+/**
+ * Turns names into search keys, so names match however they're typed:
+ *   - Accents are stripped: "San José" and "San Jose" have the same key
+ *   - Case is folded to lower case
+ *   - Punctuation and spaces collapse into a single space, and apostrophes are dropped:
+ *     "St. Louis" is "st louis", "Coeur d'Alene" is "coeur dalene"
+ *   - Leading and trailing punctuation is dropped
+ * Keys are computed once per name while loading and kept in the LocationStore, and queries are
+ * folded the same way before they're matched.  Names are folded a code point at a time, so
+ * letters outside the BMP are kept whole.  ASCII names are folded without allocating, other
+ * names are normalized once each.
+ */
+public final class SearchKeys {
+
+    /**
+     * The typographic apostrophe, U+2019
+     */
+    private static final char RIGHT_SINGLE_QUOTE = '\u2019';
+
+    private SearchKeys(){
+    }
+
+    /**
+     * Append the key of a name
+     * @param chars chars holding the name
+     * @param offset start of the name
+     * @param length length of the name
+     * @param out builder the key is appended to
+     */
+    public static void fold(char[] chars, int offset, int length, StringBuilder out){
+        int end = offset + length;
+        for(int i=offset; i<end; i++){
+            if(chars[i] >= 0x80){
+                fold(CharBuffer.wrap(chars, offset, length), out);
+                return;
+            }
+        }
+        int start = out.length();
+        boolean separated = true;
+        for(int i=offset; i<end; i++){
+            separated = append(chars[i], out, separated);
+        }
+        trim(out, start);
+    }
+
+    /**
+     * Append the key of a name
+     * @param name the name
+     * @param out builder the key is appended to
+     */
+    public static void fold(CharSequence name, StringBuilder out){
+        int start = out.length();
+        // Split accented letters into the letter and its accents, the accents are dropped below.
+        // Only names with a non-ASCII char are normalized, once for the whole name
+        CharSequence chars = isAscii(name) ? name : Normalizer.normalize(name, Normalizer.Form.NFD);
+        boolean separated = true;
+        int i = 0;
+        while(i < chars.length()){
+            // Whole code points, so letters outside the BMP are kept
+            int c = Character.codePointAt(chars, i);
+            i += Character.charCount(c);
+            if(Character.getType(c) != Character.NON_SPACING_MARK){
+                separated = append(c, out, separated);
+            }
+        }
+        trim(out, start);
+    }
+
+    /**
+     * Get the key of a name
+     * @param name the name
+     * @return the key
+     */
+    public static String fold(CharSequence name){
+        StringBuilder out = new StringBuilder(name.length());
+        fold(name, out);
+        return out.toString();
+    }
+
+    private static boolean isAscii(CharSequence name){
+        for(int i=0; i<name.length(); i++){
+            if(name.charAt(i) >= 0x80){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Append a code point without accents
+     * @param c code point to append
+     * @param out builder to append to
+     * @param separated whether the key so far is empty or ends in a space
+     * @return whether the key now ends in a space or is still empty
+     */
+    private static boolean append(int c, StringBuilder out, boolean separated){
+        if(Character.isLetterOrDigit(c)){
+            out.appendCodePoint(Character.toLowerCase(c));
+            return false;
+        }
+        if(c == '\'' || c == RIGHT_SINGLE_QUOTE){
+            // Apostrophes join the letters around them
+            return separated;
+        }
+        if(!separated){
+            out.append(' ');
+        }
+        return true;
+    }
+
+    /**
+     * Drop the space a key may end with
+     */
+    private static void trim(StringBuilder out, int start){
+        int end = out.length();
+        if(end > start && out.charAt(end - 1) == ' '){
+            out.setLength(end - 1);
+        }
+    }
+}
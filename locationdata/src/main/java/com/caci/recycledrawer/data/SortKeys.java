@@ -0,0 +1,160 @@
+package com.caci.recycledrawer.data;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Collation keys of a store's state and city names for one locale, as the compact bytes of
+ * CollationKey.toByteArray.  City keys are back to back in a byte pool next to the store's name
+ * pool, in the store's row order:
+ *   - state keys: one byte array per state id
+ *   - offsets: city i's key is the bytes from offset[i] to offset[i+1] of the pool
+ * A store keeps the keys of the locale it was sorted for and of any locale it's been sorted for
+ * since, and writes them with its other columns, so the index and the snapshot carry them too.
+ * Sorting for a locale with keys only compares the stored bytes, no name goes through the
+ * collator again.  Keys compare as unsigned bytes, in the same order as the CollationKeys.
+ */
+public class SortKeys {
+
+    /**
+     * Locale the keys were built for, its toString such as en_US
+     */
+    private final String mLocale;
+
+    private final byte[][] mStateKeys;
+    private final IntBuffer mOffset;
+    private final ByteBuffer mPool;
+
+    /**
+     * Constructor
+     * @param locale locale the keys are for
+     * @param stateKeys key of each state id
+     * @param offset where each city's key starts in the pool, plus the end of the last one
+     * @param pool city keys back to back
+     */
+    SortKeys(String locale, byte[][] stateKeys, IntBuffer offset, ByteBuffer pool){
+        mLocale = locale;
+        mStateKeys = stateKeys;
+        mOffset = offset;
+        mPool = pool;
+    }
+
+    /**
+     * Build keys from names, one key per name
+     * @param collator collator to build the keys with
+     * @param stateNames name of each state id
+     * @param cityNames name of each city row
+     * @return the keys, in the same order as the names
+     */
+    static SortKeys build(LocationCollator collator, String[] stateNames, String[] cityNames){
+        byte[][] stateKeys = new byte[stateNames.length][];
+        for(int i=0; i<stateNames.length; i++){
+            stateKeys[i] = collator.getKeyBytes(stateNames[i]);
+        }
+        byte[][] cityKeys = new byte[cityNames.length][];
+        int size = 0;
+        for(int i=0; i<cityNames.length; i++){
+            cityKeys[i] = collator.getKeyBytes(cityNames[i]);
+            size += cityKeys[i].length;
+        }
+        int[] offset = new int[cityKeys.length + 1];
+        byte[] pool = new byte[size];
+        size = 0;
+        for(int i=0; i<cityKeys.length; i++){
+            offset[i] = size;
+            System.arraycopy(cityKeys[i], 0, pool, size, cityKeys[i].length);
+            size += cityKeys[i].length;
+        }
+        offset[cityKeys.length] = size;
+        return new SortKeys(collator.getLocale().toString(), stateKeys, IntBuffer.wrap(offset),
+                ByteBuffer.wrap(pool));
+    }
+
+    /**
+     * Copy the keys onto the heap in another order, for a store whose rows were reordered
+     * @param stateOrder new state i is old state stateOrder[i]
+     * @param order new city row i is old row order[i]
+     * @return the reordered keys
+     */
+    SortKeys reorder(int[] stateOrder, int[] order){
+        byte[][] stateKeys = new byte[stateOrder.length][];
+        for(int i=0; i<stateOrder.length; i++){
+            stateKeys[i] = mStateKeys[stateOrder[i]];
+        }
+        int[] offset = new int[order.length + 1];
+        byte[] pool = new byte[getPoolSize()];
+        int size = 0;
+        for(int i=0; i<order.length; i++){
+            int row = order[i];
+            int start = mOffset.get(row);
+            int length = mOffset.get(row + 1) - start;
+            offset[i] = size;
+            for(int j=0; j<length; j++){
+                pool[size + j] = mPool.get(start + j);
+            }
+            size += length;
+        }
+        offset[order.length] = size;
+        return new SortKeys(mLocale, stateKeys, IntBuffer.wrap(offset), ByteBuffer.wrap(pool));
+    }
+
+    /**
+     * Compare two states by their keys
+     * @return less than 0, 0 or more than 0 as state a sorts before, with or after state b
+     */
+    public int compareStates(int a, int b){
+        byte[] aKey = mStateKeys[a];
+        byte[] bKey = mStateKeys[b];
+        int length = Math.min(aKey.length, bKey.length);
+        for(int i=0; i<length; i++){
+            int diff = (aKey[i] & 0xFF) - (bKey[i] & 0xFF);
+            if(diff != 0){
+                return diff;
+            }
+        }
+        return aKey.length - bKey.length;
+    }
+
+    /**
+     * Compare two city rows by their keys
+     * @return less than 0, 0 or more than 0 as row a sorts before, with or after row b
+     */
+    public int compareCities(int a, int b){
+        int aStart = mOffset.get(a);
+        int aLength = mOffset.get(a + 1) - aStart;
+        int bStart = mOffset.get(b);
+        int bLength = mOffset.get(b + 1) - bStart;
+        int length = Math.min(aLength, bLength);
+        for(int i=0; i<length; i++){
+            int diff = (mPool.get(aStart + i) & 0xFF) - (mPool.get(bStart + i) & 0xFF);
+            if(diff != 0){
+                return diff;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    /**
+     * Getters
+     * @return
+     */
+    public String getLocale(){
+        return mLocale;
+    }
+
+    byte[][] getStateKeys(){
+        return mStateKeys;
+    }
+
+    IntBuffer getOffsets(){
+        return mOffset;
+    }
+
+    ByteBuffer getPool(){
+        return mPool;
+    }
+
+    int getPoolSize(){
+        return mOffset.get(mOffset.limit() - 1);
+    }
+}
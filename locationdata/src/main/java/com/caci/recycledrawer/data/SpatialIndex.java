@@ -0,0 +1,466 @@
+package com.caci.recycledrawer.data;
+
+/**
+ * Static k-d tree over every city's coordinates, for "nearest cities" and "cities within a
+ * distance" queries.  Coordinates are stored as points on the unit sphere (x, y, z), so the
+ * straight line distance between two points orders cities the same way as their great circle
+ * distance, and there's no special case where longitude wraps around.  Reported distances are
+ * haversine distances in kilometres.
+ *
+ * The tree is implicit in primitive arrays in tree order: the node for a range of the arrays is
+ * its middle entry, with the entries before it on one side of its split plane and the entries
+ * after it on the other.  Queries fill a Result the caller owns and reuse it, so a query doesn't
+ * allocate.
+ */
+public class SpatialIndex {
+
+    /**
+     * Mean radius of the earth
+     */
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    /**
+     * Store the city rows belong to
+     */
+    private final LocationStore mStore;
+
+    /**
+     * City rows, coordinates and split axis in tree order
+     */
+    private final int[] mRows;
+    private final double[] mX;
+    private final double[] mY;
+    private final double[] mZ;
+    private final byte[] mAxis;
+
+    /**
+     * Constructor.  Use build to create an index
+     */
+    private SpatialIndex(LocationStore store, int[] rows, double[] x, double[] y, double[] z, byte[] axis){
+        mStore = store;
+        mRows = rows;
+        mX = x;
+        mY = y;
+        mZ = z;
+        mAxis = axis;
+    }
+
+    /**
+     * Build the index for every city in a store.  Run it in the background
+     * @param store store to index
+     * @return the index
+     */
+    public static SpatialIndex build(LocationStore store){
+        int count = store.getCityCount();
+        int[] rows = new int[count];
+        double[] x = new double[count];
+        double[] y = new double[count];
+        double[] z = new double[count];
+        for(int i=0; i<count; i++){
+            double lat = Math.toRadians(store.getLatitude(i));
+            double lon = Math.toRadians(store.getLongitude(i));
+            rows[i] = i;
+            x[i] = Math.cos(lat) * Math.cos(lon);
+            y[i] = Math.cos(lat) * Math.sin(lon);
+            z[i] = Math.sin(lat);
+        }
+        SpatialIndex index = new SpatialIndex(store, rows, x, y, z, new byte[count]);
+        index.split(0, count);
+        return index;
+    }
+
+    /**
+     * Find the cities nearest to a point
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @param count number of cities to find
+     * @param result filled with the cities, nearest first
+     */
+    public void nearest(double latitude, double longitude, int count, Result result){
+        result.start(latitude, longitude, Math.min(count, mRows.length));
+        if(result.mLimit > 0){
+            nearest(0, mRows.length, result);
+        }
+        result.finish(this);
+    }
+
+    /**
+     * Find every city within a distance of a point
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @param radiusKm distance in kilometres
+     * @param result filled with the cities, nearest first.  Grows if there are more cities than
+     *               it can hold
+     */
+    public void within(double latitude, double longitude, double radiusKm, Result result){
+        result.start(latitude, longitude, Integer.MAX_VALUE);
+        // Straight line distance of a point radiusKm away along the surface
+        double chord = 2 * Math.sin(Math.min(radiusKm / EARTH_RADIUS_KM, Math.PI) / 2);
+        within(0, mRows.length, chord * chord, result);
+        result.finish(this);
+    }
+
+    /**
+     * Great circle distance between two points with the haversine formula
+     * @return distance in kilometres
+     */
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2){
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Search a subtree for the nearest cities
+     * @param from start of the subtree (inclusive)
+     * @param to end of the subtree (exclusive)
+     */
+    private void nearest(int from, int to, Result result){
+        if(from >= to){
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        result.offer(mid, distanceSquared(mid, result));
+
+        // Search the side of the split the point is on first, then the other side only if
+        // a closer city could be there
+        double delta = axisDelta(mid, result);
+        if(delta < 0){
+            nearest(from, mid, result);
+            if(delta * delta < result.worst()){
+                nearest(mid + 1, to, result);
+            }
+        } else{
+            nearest(mid + 1, to, result);
+            if(delta * delta < result.worst()){
+                nearest(from, mid, result);
+            }
+        }
+    }
+
+    /**
+     * Search a subtree for the cities within a distance
+     * @param from start of the subtree (inclusive)
+     * @param to end of the subtree (exclusive)
+     * @param limit squared straight line distance
+     */
+    private void within(int from, int to, double limit, Result result){
+        if(from >= to){
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        double distance = distanceSquared(mid, result);
+        if(distance <= limit){
+            result.add(mid, distance);
+        }
+        double delta = axisDelta(mid, result);
+        if(delta < 0 || delta * delta <= limit){
+            within(from, mid, limit, result);
+        }
+        if(delta >= 0 || delta * delta <= limit){
+            within(mid + 1, to, limit, result);
+        }
+    }
+
+    /**
+     * Squared straight line distance from the query point to an entry
+     */
+    private double distanceSquared(int entry, Result result){
+        double dx = mX[entry] - result.mX;
+        double dy = mY[entry] - result.mY;
+        double dz = mZ[entry] - result.mZ;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Distance from an entry's split plane to the query point, negative on the before side
+     */
+    private double axisDelta(int entry, Result result){
+        switch(mAxis[entry]){
+            case 0:
+                return result.mX - mX[entry];
+            case 1:
+                return result.mY - mY[entry];
+            default:
+                return result.mZ - mZ[entry];
+        }
+    }
+
+    /**
+     * Arrange a range into a subtree: split on the axis the points are most spread along, with
+     * the median in the middle
+     */
+    private void split(int from, int to){
+        if(to - from < 2){
+            return;
+        }
+        byte axis = widestAxis(from, to);
+        int mid = (from + to) >>> 1;
+        select(from, to - 1, mid, axis);
+        mAxis[mid] = axis;
+        split(from, mid);
+        split(mid + 1, to);
+    }
+
+    private byte widestAxis(int from, int to){
+        double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for(int i=from; i<to; i++){
+            min[0] = Math.min(min[0], mX[i]);
+            max[0] = Math.max(max[0], mX[i]);
+            min[1] = Math.min(min[1], mY[i]);
+            max[1] = Math.max(max[1], mY[i]);
+            min[2] = Math.min(min[2], mZ[i]);
+            max[2] = Math.max(max[2], mZ[i]);
+        }
+        byte axis = 0;
+        for(byte i=1; i<3; i++){
+            if(max[i] - min[i] > max[axis] - min[axis]){
+                axis = i;
+            }
+        }
+        return axis;
+    }
+
+    /**
+     * Quickselect: move the entry that belongs at position k along an axis there, with smaller
+     * entries before it and larger ones after it
+     * @param left first entry (inclusive)
+     * @param right last entry (inclusive)
+     */
+    private void select(int left, int right, int k, int axis){
+        double[] values = axis == 0 ? mX : axis == 1 ? mY : mZ;
+        while(left < right){
+            double pivot = values[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while(i <= j){
+                while(values[i] < pivot){
+                    i++;
+                }
+                while(values[j] > pivot){
+                    j--;
+                }
+                if(i <= j){
+                    swap(i++, j--);
+                }
+            }
+            if(k <= j){
+                right = j;
+            } else if(k >= i){
+                left = i;
+            } else{
+                return;
+            }
+        }
+    }
+
+    private void swap(int a, int b){
+        int row = mRows[a];
+        mRows[a] = mRows[b];
+        mRows[b] = row;
+        double value = mX[a];
+        mX[a] = mX[b];
+        mX[b] = value;
+        value = mY[a];
+        mY[a] = mY[b];
+        mY[b] = value;
+        value = mZ[a];
+        mZ[a] = mZ[b];
+        mZ[b] = value;
+    }
+
+    /**
+     * Getters
+     * @return
+     */
+    public LocationStore getStore() {
+        return mStore;
+    }
+
+    /**
+     * Cities found by a query, nearest first.  Keep one and pass it to every query, its arrays
+     * are reused
+     * -----------------------------------------------------------------------------------------
+     */
+    public static class Result {
+
+        /**
+         * Found entries while searching, city rows once finished, and their distances: squared
+         * straight line while searching, kilometres once finished
+         */
+        private int[] mCities;
+        private double[] mDistances;
+        private int mCount;
+
+        /**
+         * Query point and most entries to keep
+         */
+        private double mLatitude;
+        private double mLongitude;
+        private double mX;
+        private double mY;
+        private double mZ;
+        private int mLimit;
+
+        /**
+         * Constructor
+         * @param capacity number of cities the result can hold before growing
+         */
+        public Result(int capacity){
+            mCities = new int[Math.max(capacity, 1)];
+            mDistances = new double[Math.max(capacity, 1)];
+        }
+
+        /**
+         * Get the number of cities found
+         * @return city count
+         */
+        public int size(){
+            return mCount;
+        }
+
+        /**
+         * Get a city found
+         * @param position position in the result, nearest first
+         * @return city row in the store
+         */
+        public int getCity(int position){
+            return mCities[position];
+        }
+
+        /**
+         * Get the store rows of the cities found, the first size() entries are used
+         * @return city rows
+         */
+        public int[] getCities(){
+            return mCities;
+        }
+
+        /**
+         * Get how far a city is from the query point
+         * @param position position in the result
+         * @return distance in kilometres
+         */
+        public double getDistanceKm(int position){
+            return mDistances[position];
+        }
+
+        /**
+         * Clear the result for a new query
+         */
+        void start(double latitude, double longitude, int limit){
+            double lat = Math.toRadians(latitude);
+            double lon = Math.toRadians(longitude);
+            mLatitude = latitude;
+            mLongitude = longitude;
+            mX = Math.cos(lat) * Math.cos(lon);
+            mY = Math.cos(lat) * Math.sin(lon);
+            mZ = Math.sin(lat);
+            mLimit = limit;
+            mCount = 0;
+            if(limit != Integer.MAX_VALUE && limit > mCities.length){
+                grow(limit);
+            }
+        }
+
+        /**
+         * Keep an entry if it's one of the nearest so far.  The entries are a max heap on
+         * distance while searching, so the furthest one is at the top
+         */
+        void offer(int entry, double distance){
+            if(mCount < mLimit){
+                int i = mCount++;
+                while(i > 0 && mDistances[(i - 1) / 2] < distance){
+                    int parent = (i - 1) / 2;
+                    mCities[i] = mCities[parent];
+                    mDistances[i] = mDistances[parent];
+                    i = parent;
+                }
+                mCities[i] = entry;
+                mDistances[i] = distance;
+            } else if(distance < mDistances[0]){
+                siftDown(0, mCount, entry, distance);
+            }
+        }
+
+        /**
+         * Distance of the furthest entry kept, once the result is full
+         */
+        double worst(){
+            return mCount < mLimit ? Double.MAX_VALUE : mDistances[0];
+        }
+
+        /**
+         * Add an entry, growing if needed
+         */
+        void add(int entry, double distance){
+            if(mCount == mCities.length){
+                grow(mCount * 2);
+            }
+            mCities[mCount] = entry;
+            mDistances[mCount] = distance;
+            mCount++;
+        }
+
+        /**
+         * Sort the entries nearest first and turn them into city rows and distances in
+         * kilometres
+         */
+        void finish(SpatialIndex index){
+            // Heap sort, the nearest results stay a heap until now
+            for(int i=mCount / 2 - 1; i>=0; i--){
+                siftDown(i, mCount, mCities[i], mDistances[i]);
+            }
+            for(int end=mCount - 1; end>0; end--){
+                int entry = mCities[end];
+                double distance = mDistances[end];
+                mCities[end] = mCities[0];
+                mDistances[end] = mDistances[0];
+                siftDown(0, end, entry, distance);
+            }
+            LocationStore store = index.mStore;
+            for(int i=0; i<mCount; i++){
+                int city = index.mRows[mCities[i]];
+                mCities[i] = city;
+                mDistances[i] = haversineKm(mLatitude, mLongitude, store.getLatitude(city),
+                        store.getLongitude(city));
+            }
+        }
+
+        /**
+         * Put an entry at a position of the max heap and move it down to where it belongs
+         */
+        private void siftDown(int i, int size, int entry, double distance){
+            while(true){
+                int child = 2 * i + 1;
+                if(child >= size){
+                    break;
+                }
+                if(child + 1 < size && mDistances[child + 1] > mDistances[child]){
+                    child++;
+                }
+                if(mDistances[child] <= distance){
+                    break;
+                }
+                mCities[i] = mCities[child];
+                mDistances[i] = mDistances[child];
+                i = child;
+            }
+            mCities[i] = entry;
+            mDistances[i] = distance;
+        }
+
+        private void grow(int capacity){
+            int[] cities = new int[capacity];
+            double[] distances = new double[capacity];
+            System.arraycopy(mCities, 0, cities, 0, mCount);
+            System.arraycopy(mDistances, 0, distances, 0, mCount);
+            mCities = cities;
+            mDistances = distances;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package com.caci.recycledrawer.data;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Typo tolerant city search.  Every city's search key is split into trigrams, three char runs
+ * of the key padded with a space at each end, and each trigram has a posting list: the
+ * sorted city rows whose name contains it.  Trigrams are hashed into a fixed number of buckets,
+ * a collision only adds candidates that the rerank throws away.
+ *
+ * A search:
+ *   - Candidates: the posting lists of the query's trigrams are merged, counting the trigrams
+ *     each row shares with the query.  An edit changes at most 3 trigrams, so a name within
+ *     maxEdits of the query shares all but 3 * maxEdits of them.  A candidate always shares at
+ *     least one, so only the postings are read even when a short query's bound drops to 0.  A
+ *     name that close sharing no trigram at all, like "bstan" and "boston", isn't found
+ *   - Rerank: candidates are scored by edit distance to the query, giving up on a name as soon
+ *     as it's further than maxEdits away
+ *   - The best matches are kept, highest score first and the most populous city first among
+ *     equal scores
+ * Search reuses its working arrays, so searches are serialized on the index.
+ */
+public class TrigramIndex {
+
+    /**
+     * Number of matches to return by default
+     */
+    public static final int DEFAULT_RESULTS = 20;
+
+    /**
+     * Trigram buckets, a power of 2
+     */
+    private static final int BUCKETS = 1 << 16;
+
+    /**
+     * Char the names are padded with, so the first and last letters are in more trigrams
+     */
+    private static final char PAD = ' ';
+
+    /**
+     * Store the city rows belong to
+     */
+    private final LocationStore mStore;
+
+    /**
+     * Sorted city rows for each bucket, and how much of each array is used
+     */
+    private final int[][] mPostings;
+    private final int[] mPostingSizes;
+
+    /**
+     * Working arrays for search
+     */
+    private int[] mShared;
+    private int[] mCandidates;
+    private StringBuilder mFolded = new StringBuilder();
+    private char[] mQuery = new char[32];
+    private int[] mGrams = new int[32];
+    private int[] mPrevious = new int[33];
+    private int[] mCurrent = new int[33];
+
+    /**
+     * Constructor.  Use a Builder to create an index
+     */
+    private TrigramIndex(LocationStore store, int[][] postings, int[] postingSizes){
+        mStore = store;
+        mPostings = postings;
+        mPostingSizes = postingSizes;
+        mShared = new int[store.getCityCount()];
+        mCandidates = new int[store.getCityCount()];
+    }
+
+    /**
+     * Build an index for every city in a store, from the search keys the store already folded
+     * @param store store to index
+     * @return the index
+     */
+    public static TrigramIndex fromStore(LocationStore store){
+        Builder builder = new Builder();
+        CharBuffer keyPool = store.getKeyPool();
+        for(int city=0; city<store.getCityCount(); city++){
+            builder.addKey(keyPool, store.getKeyOffset(city), store.getKeyLength(city));
+        }
+        return builder.build(store);
+    }
+
+    /**
+     * Find the cities closest to a possibly misspelled name
+     * @param query name to search for, folded the same way as the names
+     * @param maxResults most matches to return
+     * @return the matches, best first
+     */
+    public synchronized Matches search(CharSequence query, int maxResults){
+        Matches matches = new Matches(mStore, maxResults);
+        mFolded.setLength(0);
+        SearchKeys.fold(query, mFolded);
+        int length = mFolded.length();
+        if(length == 0){
+            return matches;
+        }
+        if(length > mQuery.length){
+            mQuery = new char[length * 2];
+            mPrevious = new int[length * 2 + 1];
+            mCurrent = new int[length * 2 + 1];
+        }
+        mFolded.getChars(0, length, mQuery, 0);
+        int maxEdits = length <= 4 ? 1 : 2;
+
+        // Count the trigrams each city shares with the query, remembering every city seen
+        if(length > mGrams.length){
+            mGrams = new int[length * 2];
+        }
+        int gramCount = grams(mQuery, 0, length, mGrams);
+        int minShared = Math.max(1, gramCount - 3 * maxEdits);
+        int candidateCount = 0;
+        for(int i=0; i<gramCount; i++){
+            int[] posting = mPostings[mGrams[i]];
+            int size = mPostingSizes[mGrams[i]];
+            for(int j=0; j<size; j++){
+                int city = posting[j];
+                if(mShared[city]++ == 0){
+                    mCandidates[candidateCount++] = city;
+                }
+            }
+        }
+        matches.setCandidateCount(candidateCount);
+
+        // Rerank the cities sharing enough trigrams by edit distance
+        CharBuffer keyPool = mStore.getKeyPool();
+        for(int i=0; i<candidateCount; i++){
+            int city = mCandidates[i];
+            int shared = mShared[city];
+            mShared[city] = 0;
+            int keyLength = mStore.getKeyLength(city);
+            if(shared < minShared || Math.abs(keyLength - length) > maxEdits){
+                continue;
+            }
+            int distance = distance(keyPool, mStore.getKeyOffset(city), keyLength, length, maxEdits);
+            if(distance <= maxEdits){
+                float score = 1f - (float) distance / Math.max(length, keyLength);
+                matches.offer(city, distance, score);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Edit distance between a city's key and the folded query, giving up once it's over a limit
+     * @param maxEdits limit
+     * @return the distance, or maxEdits + 1 if it's over the limit
+     */
+    private int distance(CharBuffer chars, int offset, int length, int queryLength, int maxEdits){
+        int[] previous = mPrevious;
+        int[] current = mCurrent;
+        for(int j=0; j<=queryLength; j++){
+            previous[j] = j;
+        }
+        for(int i=1; i<=length; i++){
+            char c = chars.get(offset + i - 1);
+            current[0] = i;
+            int rowMin = i;
+            for(int j=1; j<=queryLength; j++){
+                int cost = c == mQuery[j - 1] ? 0 : 1;
+                int best = Math.min(previous[j] + 1, current[j - 1] + 1);
+                best = Math.min(best, previous[j - 1] + cost);
+                current[j] = best;
+                rowMin = Math.min(rowMin, best);
+            }
+            if(rowMin > maxEdits){
+                return maxEdits + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[queryLength];
+    }
+
+    /**
+     * Get the distinct trigram buckets of a search key
+     * @param chars chars holding the key
+     * @param offset start of the key
+     * @param length length of the key
+     * @param grams array to put the buckets in, at least length long
+     * @return number of buckets
+     */
+    static int grams(char[] chars, int offset, int length, int[] grams){
+        if(length == 0){
+            return 0;
+        }
+        // Padded with one char at each end, so there's one trigram per char
+        char a = PAD;
+        char b = chars[offset];
+        for(int i=0; i<length; i++){
+            char c = i + 1 < length ? chars[offset + i + 1] : PAD;
+            grams[i] = bucket(a, b, c);
+            a = b;
+            b = c;
+        }
+        Arrays.sort(grams, 0, length);
+        int count = 1;
+        for(int i=1; i<length; i++){
+            if(grams[i] != grams[count - 1]){
+                grams[count++] = grams[i];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Hash a trigram to its bucket
+     */
+    private static int bucket(char a, char b, char c){
+        int hash = (a * 31 + b) * 31 + c;
+        return (hash ^ (hash >>> 16)) & (BUCKETS - 1);
+    }
+
+    /**
+     * The best matches of a search, highest score first
+     * -------------------------------------------------
+     */
+    public static class Matches {
+
+        private final LocationStore mStore;
+        private final int[] mCities;
+        private final int[] mDistances;
+        private final float[] mScores;
+        private int mCount;
+
+        /**
+         * Number of cities the search read from the postings
+         */
+        private int mCandidateCount;
+
+        Matches(LocationStore store, int maxResults){
+            mStore = store;
+            mCities = new int[maxResults];
+            mDistances = new int[maxResults];
+            mScores = new float[maxResults];
+        }
+
+        /**
+         * Keep a match if it's among the best so far
+         */
+        void offer(int city, int distance, float score){
+            int position = mCount;
+            while(position > 0 && isBetter(score, city, mScores[position - 1], mCities[position - 1])){
+                position--;
+            }
+            if(position == mCities.length){
+                return;
+            }
+            int moved = Math.min(mCount, mCities.length - 1) - position;
+            System.arraycopy(mCities, position, mCities, position + 1, moved);
+            System.arraycopy(mDistances, position, mDistances, position + 1, moved);
+            System.arraycopy(mScores, position, mScores, position + 1, moved);
+            mCities[position] = city;
+            mDistances[position] = distance;
+            mScores[position] = score;
+            mCount = Math.min(mCount + 1, mCities.length);
+        }
+
+        /**
+         * Higher scores first, then bigger cities, then store order
+         */
+        private boolean isBetter(float score, int city, float otherScore, int otherCity){
+            if(score != otherScore){
+                return score > otherScore;
+            }
+            int population = mStore.getPopulation(city);
+            int otherPopulation = mStore.getPopulation(otherCity);
+            if(population != otherPopulation){
+                return population > otherPopulation;
+            }
+            return city < otherCity;
+        }
+
+        /**
+         * Get the matches as drawer rows
+         * @return the rows
+         */
+        public DrawerRows toRows(){
+            return DrawerRows.forSearch(new String[0], new int[0], 0, 0, mStore, mCities, 0, mCount);
+        }
+
+        /**
+         * Getters
+         * @param position position in the matches, best first
+         */
+        public int size(){
+            return mCount;
+        }
+
+        public int getCity(int position){
+            return mCities[position];
+        }
+
+        public int getDistance(int position){
+            return mDistances[position];
+        }
+
+        /**
+         * Get how close a match is
+         * @param position position in the matches
+         * @return 1 for an exact match, down towards 0 as the edits make up more of the name
+         */
+        public float getScore(int position){
+            return mScores[position];
+        }
+
+        /**
+         * Candidate count getter and setter, the number of cities read from the postings.  For
+         * tests, the search's cost
+         */
+        int getCandidateCount(){
+            return mCandidateCount;
+        }
+
+        void setCandidateCount(int candidateCount){
+            mCandidateCount = candidateCount;
+        }
+    }
+
+    /**
+     * Indexes cities one at a time by their search keys, read from a pool such as the store's key
+     * pool so no name is folded again.  Rows are numbered in the order they're added
+     * -----------------------------------------------------------------------------------------
+     */
+    public static class Builder {
+
+        private int[][] mPostings = new int[BUCKETS][];
+        private int[] mPostingSizes = new int[BUCKETS];
+        private int mCount;
+        private char[] mChars = new char[32];
+        private int[] mGrams = new int[32];
+
+        /**
+         * Add a city by its search key
+         * @param pool pool holding the key, such as the store's key pool
+         * @param offset start of the key
+         * @param length length of the key
+         */
+        public void addKey(CharBuffer pool, int offset, int length){
+            if(length > mChars.length){
+                mChars = new char[length * 2];
+            }
+            LocationStore.getChars(pool, offset, length, mChars, 0);
+            addKey(mChars, 0, length);
+        }
+
+        /**
+         * Add a city by its search key
+         * @param chars chars holding the key
+         * @param offset start of the key
+         * @param length length of the key
+         */
+        private void addKey(char[] chars, int offset, int length){
+            if(length > mGrams.length){
+                mGrams = new int[length * 2];
+            }
+            int row = mCount++;
+            int gramCount = grams(chars, offset, length, mGrams);
+            for(int i=0; i<gramCount; i++){
+                int bucket = mGrams[i];
+                int[] posting = mPostings[bucket];
+                int size = mPostingSizes[bucket];
+                if(posting == null){
+                    posting = mPostings[bucket] = new int[4];
+                } else if(size == posting.length){
+                    posting = mPostings[bucket] = Arrays.copyOf(posting, size * 2);
+                }
+                // Rows are added in increasing order, so the list stays sorted
+                posting[size] = row;
+                mPostingSizes[bucket] = size + 1;
+            }
+        }
+
+        /**
+         * Get the number of cities added
+         * @return city count
+         */
+        public int getCount(){
+            return mCount;
+        }
+
+        /**
+         * Finish the index
+         * @param store store holding the cities, added in its row order
+         * @return the index
+         */
+        public TrigramIndex build(LocationStore store){
+            return new TrigramIndex(store, mPostings, mPostingSizes);
+        }
+    }
+}
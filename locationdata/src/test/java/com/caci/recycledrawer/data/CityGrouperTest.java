@@ -0,0 +1,97 @@
+package com.caci.recycledrawer.data;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CityGrouperTest {
+
+    @Test
+    public void groupsByStateAndSortsEachGroup() {
+        // Rows 0-5, in states 1, 0, 1, 2, 0, 1 with these sort values
+        int[] stateId = {1, 0, 1, 2, 0, 1};
+        final int[] values = {30, 20, 10, 5, 10, 20};
+        CityGrouper grouper = new CityGrouper(stateId, stateId.length, 3, byValue(values));
+        grouper.group(null);
+
+        assertArrayEquals(new int[]{0, 2, 5, 6}, grouper.getStateStart());
+        assertArrayEquals(new int[]{4, 1, 2, 5, 0, 3}, grouper.getOrder());
+    }
+
+    @Test
+    public void tiesKeepLoadOrder() {
+        // Every row ties, within and across the groups
+        int[] stateId = {0, 1, 0, 1, 0, 1, 0};
+        CityGrouper grouper = new CityGrouper(stateId, stateId.length, 2,
+                byValue(new int[stateId.length]));
+        grouper.group(null);
+
+        assertArrayEquals(new int[]{0, 2, 4, 6, 1, 3, 5}, grouper.getOrder());
+    }
+
+    @Test
+    public void emptyStatesHaveEmptyGroups() {
+        int[] stateId = {2, 2};
+        CityGrouper grouper = new CityGrouper(stateId, stateId.length, 4, byValue(new int[]{1, 0}));
+        grouper.group(null);
+
+        assertArrayEquals(new int[]{0, 0, 0, 2, 2}, grouper.getStateStart());
+        assertArrayEquals(new int[]{1, 0}, grouper.getOrder());
+    }
+
+    @Test
+    public void parallelSortMatchesSerialSort() {
+        // Enough rows to go through the pool, with plenty of ties
+        int count = 50000;
+        int stateCount = 40;
+        Random random = new Random(7);
+        int[] stateId = new int[count];
+        int[] values = new int[count];
+        for(int i=0; i<count; i++){
+            stateId[i] = random.nextInt(stateCount);
+            values[i] = random.nextInt(100);
+        }
+
+        CityGrouper serial = new CityGrouper(stateId, count, stateCount, byValue(values));
+        serial.group(null);
+        CityGrouper parallel = new CityGrouper(stateId, count, stateCount, byValue(values));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallel.group(pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertArrayEquals(serial.getStateStart(), parallel.getStateStart());
+        assertArrayEquals(serial.getOrder(), parallel.getOrder());
+
+        // Every group is sorted, with ties in load order
+        int[] order = parallel.getOrder();
+        int[] stateStart = parallel.getStateStart();
+        assertEquals(count, stateStart[stateCount]);
+        for(int state=0; state<stateCount; state++){
+            for(int i=stateStart[state]; i<stateStart[state + 1]; i++){
+                assertEquals(state, stateId[order[i]]);
+                if(i > stateStart[state]){
+                    int previous = order[i - 1];
+                    assertTrue(values[previous] < values[order[i]]
+                            || (values[previous] == values[order[i]] && previous < order[i]));
+                }
+            }
+        }
+    }
+
+    private static CityGrouper.RowComparator byValue(final int[] values){
+        return new CityGrouper.RowComparator() {
+            @Override
+            public int compare(int a, int b) {
+                return Integer.compare(values[a], values[b]);
+            }
+        };
+    }
+}
@@ -0,0 +1,71 @@
+package com.caci.recycledrawer.data;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+public class DrawerRowsTest {
+
+    @Test
+    public void searchRowsAreStatesThenCities() {
+        LocationStore store = buildStore();
+        String[] stateNames = {"Alaska", "Maine", "Ohio", "Texas"};
+        int[] stateIds = {3, 2, 1, 0};
+        int[] cityRows = {4, 0, 3, 1, 2};
+        DrawerRows rows = DrawerRows.forSearch(stateNames, stateIds, 1, 3, store, cityRows, 1, 4);
+
+        assertEquals(5, rows.size());
+        int[] types = {DrawerRows.LOCATION_ITEM, DrawerRows.LOCATION_ITEM, DrawerRows.CITY_ITEM,
+                DrawerRows.CITY_ITEM, DrawerRows.CITY_ITEM};
+        for(int position=0; position<types.length; position++){
+            assertEquals(types[position], rows.getViewType(position));
+        }
+        assertEquals("Maine", rows.getStateName(0));
+        assertEquals(1, rows.getStateId(1));
+        assertEquals(0, rows.getCity(2));
+        assertEquals(1, rows.getCity(4));
+    }
+
+    @Test
+    public void statesFollowTheirHeader() {
+        String[] stateNames = {"Alaska", "Maine", "Ohio"};
+        DrawerRows rows = DrawerRows.forStates(stateNames);
+
+        assertEquals(4, rows.size());
+        assertEquals(DrawerRows.STATE_HEADER, rows.getViewType(0));
+        for(int position=1; position<rows.size(); position++){
+            assertEquals(DrawerRows.LOCATION_ITEM, rows.getViewType(position));
+            assertEquals(stateNames[position - 1], rows.getStateName(position));
+            assertEquals(position - 1, rows.getStateId(position));
+        }
+    }
+
+    @Test
+    public void citiesFollowTheirHeader() {
+        LocationStore store = buildStore();
+        DrawerRows cities = DrawerRows.forCities(store.getCitiesByState("Ohio"));
+        DrawerRows nearby = DrawerRows.forNearby(store, new int[]{2, 0, 1}, 2);
+
+        for(DrawerRows rows : new DrawerRows[]{cities, nearby}){
+            assertEquals(DrawerRows.CITY_HEADER, rows.getViewType(0));
+            for(int position=1; position<rows.size(); position++){
+                assertEquals(DrawerRows.CITY_ITEM, rows.getViewType(position));
+            }
+        }
+        assertEquals(3, nearby.size());
+        assertEquals(0, nearby.getCity(2));
+        assertEquals(0, DrawerRows.empty().size());
+    }
+
+    private static LocationStore buildStore(){
+        LocationStore.Builder builder = new LocationStore.Builder();
+        builder.add("Ohio", "Columbus", 40.0, -83.0, 822553, 1, 0);
+        builder.add("Ohio", "Dayton", 39.8, -84.2, 141527, 2, 0);
+        builder.add("Texas", "Houston", 29.8, -95.4, 2195914, 3, 0);
+        builder.add("Maine", "Portland", 43.7, -70.3, 66318, 4, 0);
+        builder.add("Alaska", "Juneau", 58.3, -134.4, 32660, 5, 0);
+        return builder.build(null, new LocationCollator(Locale.US));
+    }
+}
@@ -0,0 +1,108 @@
+package com.caci.recycledrawer.data;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IndexPageSourceTest {
+
+    private static final String LONG_NAME =
+            "Llanfairpwllgwyngyllgogerychwyrndrobwllllantysiliogogogoch";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LocationStore mStore;
+    private LocationStore.CitySlice mCities;
+
+    @Before
+    public void setUp() throws IOException {
+        LocationStore.Builder builder = new LocationStore.Builder();
+        for(int i=0; i<50; i++){
+            builder.add("Texas", String.format(Locale.US, "City %03d", i), 0, 0, (i * 37) % 50,
+                    i + 1, 0);
+        }
+        builder.add("Wales", LONG_NAME, 53.2, -4.2, 3107, 51, 0);
+        builder.add("Wales", "Llandudno", 53.3, -3.8, 20701, 52, 0);
+        File file = folder.newFile();
+        LocationIndex.write(builder.build(null, new LocationCollator(Locale.US)), 1, "en_US", file);
+        mStore = LocationIndex.map(file).getStore();
+        mCities = mStore.getCitiesByState("Texas");
+    }
+
+    @Test
+    public void loadsAPageOfNamesFromTheMappedStore() {
+        assertTrue(mStore.isMapped());
+        IndexPageSource source = new IndexPageSource(mCities);
+        assertEquals(50, source.size());
+
+        CityPage page = new CityPage(4);
+        source.loadPage(8, page);
+        assertEquals(8, page.getStart());
+        assertEquals(4, page.size());
+        assertFalse(page.contains(7));
+        assertFalse(page.contains(12));
+        for(int i=8; i<12; i++){
+            assertTrue(page.contains(i));
+            assertEquals(mCities.getCity(i), source.getRow(i));
+            assertEquals(String.format(Locale.US, "City %03d", i), name(page, i));
+        }
+
+        // The last page is cut short by the end of the state
+        source.loadPage(48, page);
+        assertEquals(2, page.size());
+        assertEquals("City 049", name(page, 49));
+    }
+
+    @Test
+    public void readsTheCitiesInTheOrderSet() {
+        IndexPageSource source = new IndexPageSource(mCities);
+        CityOrderings orderings = new CityOrderings(mStore);
+        orderings.prepare(mCities.getState());
+        int[] order = orderings.get(mCities.getState(), CityOrderings.POPULATION);
+        source.setOrder(order);
+
+        CityPage page = new CityPage(8);
+        for(int start=0; start<source.size(); start+=page.getCapacity()){
+            source.loadPage(start, page);
+            for(int i=start; i<start + page.size(); i++){
+                assertEquals(order[i], source.getRow(i));
+                assertEquals(mStore.getCityName(order[i]), name(page, i));
+                if(i > 0){
+                    assertTrue(mStore.getPopulation(order[i - 1])
+                            >= mStore.getPopulation(order[i]));
+                }
+            }
+        }
+
+        source.setOrder(null);
+        assertEquals(mCities.getCity(5), source.getRow(5));
+    }
+
+    @Test
+    public void reusedPageGrowsForLongNames() {
+        IndexPageSource source = new IndexPageSource(mStore.getCitiesByState("Wales"));
+        CityPage page = new CityPage(2);
+        new IndexPageSource(mCities).loadPage(0, page);
+        assertEquals("City 000", name(page, 0));
+
+        // Reused for another state, its old names are overwritten
+        source.loadPage(0, page);
+        assertEquals(2, page.size());
+        assertEquals("Llandudno", name(page, 0));
+        assertEquals(LONG_NAME, name(page, 1));
+    }
+
+    private static String name(CityPage page, int index){
+        return new String(page.getNamePool(), page.getNameOffset(index), page.getNameLength(index));
+    }
+}
@@ -0,0 +1,266 @@
+package com.caci.recycledrawer.data;
+
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Loads synthetic files of 10k to 10M cities the way LocationLoadTask does, opens and binds every
+ * state's city list the way the drawer does, and fails if any phase's time, or the memory the
+ * loaded model keeps, grows faster than its complexity budget from one size to the next.  The
+ * state count grows with the city count too, so work done per state shows up as well as work
+ * done per city.
+ *
+ * Runs in the scaleTest task, not test or check, since the 10M file alone takes minutes and
+ * gigabytes.  It stops at DEFAULT_MAX_CITIES unless -PscaleMaxCities asks for more.
+ */
+public class LocationScaleTest {
+
+    /**
+     * City counts to load, and the system property that caps them
+     */
+    private static final int[] SIZES = {10000, 100000, 1000000, 10000000};
+    private static final String MAX_CITIES_PROPERTY = "scale.maxCities";
+    private static final int DEFAULT_MAX_CITIES = 100000;
+
+    /**
+     * Directory the generated files are kept in, so later runs reuse them
+     */
+    private static final String DIR_PROPERTY = "scale.dir";
+
+    /**
+     * How far past its budget a phase may grow before failing, to allow for GC and JIT noise
+     */
+    private static final double TIME_TOLERANCE = 2.0;
+    private static final double MEMORY_TOLERANCE = 1.5;
+
+    /**
+     * Times shorter than this are too noisy to compare, they're rounded up to it
+     */
+    private static final long MIN_NANOS = 10000000;
+
+    /**
+     * How fast a phase may grow with the number of cities
+     */
+    private enum Budget {
+        LINEAR, N_LOG_N;
+
+        /**
+         * @return how many times longer a phase may take for n2 cities than for n1
+         */
+        double growth(int n1, int n2){
+            double growth = (double) n2 / n1;
+            return this == N_LOG_N ? growth * Math.log(n2) / Math.log(n1) : growth;
+        }
+    }
+
+    /**
+     * The phases timed, in the order they run, and their budgets
+     */
+    private static final String[] PHASES = {"parse", "build", "search indexes", "nearby index",
+            "open and bind"};
+    private static final Budget[] PHASE_BUDGETS = {Budget.LINEAR, Budget.N_LOG_N, Budget.N_LOG_N,
+            Budget.N_LOG_N, Budget.LINEAR};
+    private static final Budget MEMORY_BUDGET = Budget.LINEAR;
+
+    /**
+     * Stand-in for the TextView a bound row's name is copied into
+     */
+    private final char[] mText = new char[256];
+
+    @Test
+    public void loadingAndBindingStayWithinBudget() throws IOException {
+        int maxCities = Integer.getInteger(MAX_CITIES_PROPERTY, DEFAULT_MAX_CITIES);
+        File dir = new File(System.getProperty(DIR_PROPERTY,
+                new File(System.getProperty("java.io.tmpdir"), "recycledrawer-scale").getPath()));
+
+        int count = 0;
+        while(count < SIZES.length && SIZES[count] <= maxCities){
+            count++;
+        }
+        long[][] nanos = new long[count][];
+        long[] bytes = new long[count];
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            // Warm up the JIT on the smallest file, so the first size isn't measured cold
+            File warmUp = generate(dir, SIZES[0]);
+            for(int run=0; run<5; run++){
+                load(warmUp, pool, new long[PHASES.length]);
+            }
+
+            for(int i=0; i<count; i++){
+                File file = generate(dir, SIZES[i]);
+                // Small sizes are over in milliseconds, so take the best of a few runs
+                int runs = Math.max(1, Math.min(5, 1000000 / SIZES[i]));
+                long before = usedMemory();
+                Object[] model = null;
+                for(int run=0; run<runs; run++){
+                    long[] runNanos = new long[PHASES.length];
+                    // Let the last run's model go before loading the next
+                    model = null;
+                    model = load(file, pool, runNanos);
+                    nanos[i] = best(nanos[i], runNanos);
+                }
+                bytes[i] = usedMemory() - before;
+                System.out.println(report(SIZES[i], nanos[i], bytes[i], model));
+                model = null;
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        StringBuilder failures = new StringBuilder();
+        for(int i=1; i<count; i++){
+            for(int phase=0; phase<PHASES.length; phase++){
+                check(failures, PHASES[phase], PHASE_BUDGETS[phase], TIME_TOLERANCE, SIZES[i - 1],
+                        SIZES[i], Math.max(nanos[i - 1][phase], MIN_NANOS),
+                        Math.max(nanos[i][phase], MIN_NANOS));
+            }
+            check(failures, "memory", MEMORY_BUDGET, MEMORY_TOLERANCE, SIZES[i - 1], SIZES[i],
+                    bytes[i - 1], bytes[i]);
+        }
+        if(failures.length() > 0){
+            fail("Over the complexity budget:\n" + failures);
+        }
+    }
+
+    /**
+     * Write the file for a size: a state per hundred cities, at least the real 51, and a tenth
+     * of the names in Unicode
+     */
+    private static File generate(File dir, int cities) throws IOException {
+        SyntheticCities synthetic = new SyntheticCities();
+        synthetic.setCityCount(cities);
+        synthetic.setStateCount(Math.max(51, cities / 100));
+        synthetic.setUnicodeFraction(0.1);
+        return synthetic.write(dir);
+    }
+
+    /**
+     * Load a file the way LocationLoadTask does with no index, snapshot or database, then open
+     * and bind every state
+     * @param nanos receives each phase's time
+     * @return everything the app keeps once loaded, to measure its memory
+     */
+    private Object[] load(File file, ForkJoinPool pool, long[] nanos) throws IOException {
+        long start = System.nanoTime();
+        final LocationStore.Builder builder = new LocationStore.Builder();
+        new LocationLoader(new BufferedInputStream(new FileInputStream(file), 64 * 1024))
+                .load(new LocationLoader.LocationListener() {
+                    @Override
+                    public void onLocation(Location loc) {
+                        builder.add(loc);
+                    }
+                });
+        nanos[0] = lap(start);
+
+        start = System.nanoTime();
+        LocationStore store = builder.build(pool, new LocationCollator(Locale.US));
+        nanos[1] = lap(start);
+
+        start = System.nanoTime();
+        TrigramIndex fuzzyIndex = TrigramIndex.fromStore(store);
+        PrefixIndex prefixIndex = PrefixIndex.build(store);
+        nanos[2] = lap(start);
+
+        start = System.nanoTime();
+        SpatialIndex nearbyIndex = SpatialIndex.build(store);
+        nanos[3] = lap(start);
+
+        start = System.nanoTime();
+        bindAll(DrawerRows.forStates(store.getStateNames()));
+        for(int state=0; state<store.getStateCount(); state++){
+            bindAll(DrawerRows.forCities(store.getCities(state)));
+        }
+        nanos[4] = lap(start);
+
+        return new Object[]{store, fuzzyIndex, prefixIndex, nearbyIndex};
+    }
+
+    /**
+     * Bind every row the way LocationAdapter does, with the text going to a buffer
+     */
+    private void bindAll(DrawerRows rows){
+        for(int position=0; position<rows.size(); position++){
+            switch(rows.getViewType(position)){
+                case DrawerRows.LOCATION_ITEM:
+                    setText(rows.getStateName(position));
+                    break;
+                case DrawerRows.CITY_ITEM:
+                    LocationStore.getChars(rows.getNamePool(), rows.getNameOffset(position),
+                            Math.min(rows.getNameLength(position), mText.length), mText, 0);
+                    break;
+                case DrawerRows.STATE_HEADER:
+                    setText(rows.getStateHeader().getName());
+                    break;
+                case DrawerRows.CITY_HEADER:
+                    setText(rows.getCityHeader().getName());
+                    break;
+            }
+        }
+    }
+
+    private void setText(String text){
+        text.getChars(0, Math.min(text.length(), mText.length), mText, 0);
+    }
+
+    /**
+     * Add a failure if a measurement grew by more than its budget allows
+     */
+    private static void check(StringBuilder failures, String name, Budget budget,
+                              double tolerance, int n1, int n2, long value1, long value2){
+        double growth = (double) value2 / Math.max(value1, 1);
+        double allowed = budget.growth(n1, n2) * tolerance;
+        if(growth > allowed){
+            failures.append(String.format(Locale.US,
+                    "  %s grew %.1fx from %d to %d cities, %s allows %.1fx\n",
+                    name, growth, n1, n2, budget, allowed));
+        }
+    }
+
+    private static String report(int cities, long[] nanos, long bytes, Object[] model){
+        LocationStore store = (LocationStore) model[0];
+        StringBuilder report = new StringBuilder(String.format(Locale.US,
+                "%,d cities in %,d states:", cities, store.getStateCount()));
+        for(int phase=0; phase<PHASES.length; phase++){
+            report.append(String.format(Locale.US, " %s %.1fms,", PHASES[phase],
+                    nanos[phase] / 1e6));
+        }
+        report.append(String.format(Locale.US, " kept %.1fMB", bytes / 1e6));
+        return report.toString();
+    }
+
+    private static long[] best(long[] best, long[] run){
+        if(best == null){
+            return run;
+        }
+        for(int i=0; i<best.length; i++){
+            best[i] = Math.min(best[i], run[i]);
+        }
+        return best;
+    }
+
+    private static long lap(long start){
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Heap in use once everything unreachable has been collected
+     */
+    private static long usedMemory(){
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for(int i=0; i<3; i++){
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,130 @@
+package com.caci.recycledrawer.data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LocationSnapshotTest {
+
+    private static final long CHECKSUM = 0x1234567890L;
+    private static final String LOCALE = "en_US";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsBackWhatWasWritten() throws IOException {
+        LocationStore store = buildStore();
+        File file = folder.newFile();
+        new LocationSnapshot(file).write(store, CHECKSUM, LOCALE);
+
+        LocationStore read = new LocationSnapshot(file).read(CHECKSUM, LOCALE);
+        assertNotNull(read);
+        assertArrayEquals(store.getStateNames(), read.getStateNames());
+        assertEquals(store.getCityCount(), read.getCityCount());
+        for(int state=0; state<store.getStateCount(); state++){
+            assertEquals(store.getStateKey(state), read.getStateKey(state));
+            assertEquals(store.getCities(state).getStart(), read.getCities(state).getStart());
+            assertEquals(store.getCities(state).size(), read.getCities(state).size());
+        }
+        for(int city=0; city<store.getCityCount(); city++){
+            assertEquals(store.getCityName(city), read.getCityName(city));
+            assertEquals(store.getStateId(city), read.getStateId(city));
+            assertEquals(store.getLatitude(city), read.getLatitude(city), 0);
+            assertEquals(store.getLongitude(city), read.getLongitude(city), 0);
+            assertEquals(store.getPopulation(city), read.getPopulation(city));
+            assertEquals(store.getRank(city), read.getRank(city));
+            assertEquals(store.getGrowth(city), read.getGrowth(city));
+            assertEquals(key(store, city), key(read, city));
+        }
+    }
+
+    @Test
+    public void ignoresOtherJsonOrLocale() throws IOException {
+        File file = folder.newFile();
+        new LocationSnapshot(file).write(buildStore(), CHECKSUM, LOCALE);
+
+        assertNull(new LocationSnapshot(file).read(CHECKSUM + 1, LOCALE));
+        assertNull(new LocationSnapshot(file).read(CHECKSUM, "de_DE"));
+        // Stale isn't corrupt, it's left for the next write to replace
+        assertTrue(file.exists());
+    }
+
+    @Test
+    public void deletesSnapshotWithBadCrc() throws IOException {
+        File file = folder.newFile();
+        new LocationSnapshot(file).write(buildStore(), CHECKSUM, LOCALE);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            // Flip a byte of the last city name
+            raf.seek(raf.length() - 20);
+            int b = raf.read();
+            raf.seek(raf.length() - 20);
+            raf.write(b ^ 0xFF);
+        } finally {
+            raf.close();
+        }
+
+        assertCorrupt(file);
+    }
+
+    @Test
+    public void deletesTruncatedSnapshot() throws IOException {
+        File file = folder.newFile();
+        new LocationSnapshot(file).write(buildStore(), CHECKSUM, LOCALE);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() / 2);
+        } finally {
+            raf.close();
+        }
+
+        assertCorrupt(file);
+    }
+
+    @Test
+    public void missingSnapshotIsNull() throws IOException {
+        assertNull(new LocationSnapshot(new File(folder.getRoot(), "none")).read(CHECKSUM, LOCALE));
+    }
+
+    /**
+     * Reading a corrupt snapshot throws, and deletes it so it isn't tried again
+     */
+    private static void assertCorrupt(File file){
+        try {
+            new LocationSnapshot(file).read(CHECKSUM, LOCALE);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            assertFalse(file.exists());
+        }
+    }
+
+    private static LocationStore buildStore(){
+        LocationStore.Builder builder = new LocationStore.Builder();
+        builder.add("Texas", "Houston", 29.76, -95.37, 2195914, 4, 110);
+        builder.add("California", "San José", 37.34, -121.89, 998537, 10, 57);
+        builder.add("Texas", "Austin", 30.27, -97.74, 885400, 11, 319);
+        builder.add("California", "Los Angeles", 34.05, -118.24, 3884307, 2, 48);
+        builder.add("Idaho", "Coeur d'Alene", 47.68, -116.78, 46402, 967, Location.GROWTH_UNKNOWN);
+        return builder.build(null, new LocationCollator(Locale.US));
+    }
+
+    private static String key(LocationStore store, int city){
+        char[] key = new char[store.getKeyLength(city)];
+        LocationStore.getChars(store.getKeyPool(), store.getKeyOffset(city), key.length, key, 0);
+        return new String(key);
+    }
+}
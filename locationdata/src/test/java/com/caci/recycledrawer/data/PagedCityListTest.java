@@ -0,0 +1,212 @@
+package com.caci.recycledrawer.data;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PagedCityListTest {
+
+    /**
+     * Small pages, so a 50 city state is 13 of them
+     */
+    private static final int PAGE_SIZE = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LocationStore mStore;
+    private LocationStore.CitySlice mCities;
+    private QueueExecutor mExecutor;
+    private PagedCityList mList;
+    private List<Integer> mLoadedStarts;
+
+    @Before
+    public void setUp() throws IOException {
+        LocationStore.Builder builder = new LocationStore.Builder();
+        for(int i=0; i<50; i++){
+            builder.add("Texas", String.format(Locale.US, "City %03d", i), 0, 0, (i * 37) % 50,
+                    i + 1, 0);
+        }
+        builder.add("Ohio", "Columbus", 40.0, -83.0, 822553, 51, 0);
+        File file = folder.newFile();
+        LocationIndex.write(builder.build(null, new LocationCollator(Locale.US)), 1, "en_US", file);
+        mStore = LocationIndex.map(file).getStore();
+        assertTrue(mStore.isMapped());
+        mCities = mStore.getCitiesByState("Texas");
+
+        mExecutor = new QueueExecutor();
+        mList = new PagedCityList("Texas", new IndexPageSource(mCities), mExecutor,
+                new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        command.run();
+                    }
+                }, PAGE_SIZE);
+        mLoadedStarts = new ArrayList<>();
+        mList.setListener(new PagedCityList.Listener() {
+            @Override
+            public void onPageLoaded(PagedCityList list, int start, int count) {
+                assertEquals(Math.min(PAGE_SIZE, list.size() - start), count);
+                mLoadedStarts.add(start);
+            }
+        });
+    }
+
+    @Test
+    public void loadsThePagesAroundTheScreen() {
+        assertEquals(50, mList.size());
+        assertEquals("Texas", mList.getStateName());
+        assertNull(mList.getPage(5));
+        assertEquals(1, mExecutor.size());
+
+        // Page 1 on screen prefetches pages 0 to 3, and page 1 is already loading
+        mList.onViewport(4, 7);
+        assertEquals(4, mExecutor.size());
+        mExecutor.runAll();
+        assertEquals(4, mList.getLoadedPageCount());
+        Collections.sort(mLoadedStarts);
+        assertEquals(Arrays.asList(0, 4, 8, 12), mLoadedStarts);
+
+        for(int i=0; i<4 * PAGE_SIZE; i++){
+            CityPage page = mList.getPage(i);
+            assertNotNull(page);
+            assertTrue(page.contains(i));
+            assertEquals(mCities.getCity(i), mList.getRow(i));
+            assertEquals(mStore.getCityName(mList.getRow(i)), name(page, i));
+        }
+        assertEquals(0, mExecutor.size());
+    }
+
+    @Test
+    public void evictsFarPagesAndReusesThem() {
+        mList.onViewport(0, 3);
+        mExecutor.runAll();
+        Set<CityPage> first = pages(0, 3 * PAGE_SIZE);
+        assertEquals(3, first.size());
+
+        // Page 10 on screen keeps pages 6 to 12, the first three are evicted
+        mList.onViewport(40, 43);
+        assertEquals(0, mList.getLoadedPageCount());
+        assertEquals(5, mExecutor.size());
+        mExecutor.runAll();
+        assertEquals(5, mList.getLoadedPageCount());
+        Set<CityPage> last = pages(32, 50);
+        assertEquals(5, last.size());
+        last.retainAll(first);
+        assertEquals(3, last.size());
+
+        // The last page is cut short by the end of the state
+        CityPage end = mList.getPage(49);
+        assertEquals(48, end.getStart());
+        assertEquals(2, end.size());
+        assertEquals(mStore.getCityName(mCities.getCity(49)), name(end, 49));
+    }
+
+    @Test
+    public void dropsPagesScrolledAwayWhileLoading() {
+        mList.onViewport(0, 3);
+        mList.onViewport(40, 43);
+        assertEquals(8, mExecutor.size());
+        mExecutor.runAll();
+        assertEquals(5, mList.getLoadedPageCount());
+        assertEquals(5, mLoadedStarts.size());
+        for(int start : mLoadedStarts){
+            assertTrue(start >= 32);
+        }
+
+        // Released pages still loading are dropped when they arrive
+        mList.getPage(0);
+        mList.release();
+        assertEquals(0, mList.getLoadedPageCount());
+        mExecutor.runAll();
+        assertEquals(0, mList.getLoadedPageCount());
+        assertEquals(5, mLoadedStarts.size());
+    }
+
+    @Test
+    public void setOrderReloadsThePagesInTheNewOrder() {
+        mList.onViewport(0, 3);
+        mExecutor.runAll();
+
+        CityOrderings orderings = new CityOrderings(mStore);
+        orderings.prepare(mCities.getState());
+        int[] order = orderings.get(mCities.getState(), CityOrderings.POPULATION);
+        mList.setOrder(order);
+        assertEquals(0, mList.getLoadedPageCount());
+        assertNull(mList.getPage(0));
+        mList.onViewport(0, 3);
+        mExecutor.runAll();
+
+        for(int i=0; i<3 * PAGE_SIZE; i++){
+            assertEquals(order[i], mList.getRow(i));
+            assertEquals(mStore.getCityName(order[i]), name(mList.getPage(i), i));
+            if(i > 0){
+                assertTrue(mStore.getPopulation(mList.getRow(i - 1))
+                        >= mStore.getPopulation(mList.getRow(i)));
+            }
+        }
+
+        mList.setOrder(null);
+        for(int i=0; i<mList.size(); i++){
+            assertEquals(mCities.getCity(i), mList.getRow(i));
+        }
+    }
+
+    /**
+     * The distinct loaded pages holding a run of cities
+     */
+    private Set<CityPage> pages(int start, int end){
+        Set<CityPage> pages = Collections.newSetFromMap(new IdentityHashMap<CityPage, Boolean>());
+        for(int i=start; i<end; i++){
+            CityPage page = mList.getPage(i);
+            assertNotNull(page);
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    private static String name(CityPage page, int index){
+        return new String(page.getNamePool(), page.getNameOffset(index), page.getNameLength(index));
+    }
+
+    /**
+     * Holds the page loads until the test runs them
+     */
+    private static class QueueExecutor implements Executor {
+
+        private final ArrayDeque<Runnable> mQueue = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mQueue.add(command);
+        }
+
+        int size(){
+            return mQueue.size();
+        }
+
+        void runAll(){
+            while(!mQueue.isEmpty()){
+                mQueue.poll().run();
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.caci.recycledrawer.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class PrefixIndexTest {
+
+    private static final String[] STATES = {"California", "Colorado", "Connecticut", "Idaho",
+            "New Mexico", "New York", "Texas"};
+    private static final String[] CITIES = {"San José", "San Jose", "Santa Ana", "Santa Fe",
+            "San Antonio", "Sandy", "Coeur d'Alene", "Colorado Springs", "New Haven",
+            "Newark", "New York", "Ñandú", "O'Fallon", "Austin", "Ann Arbor"};
+
+    @Test
+    public void rangesMatchBruteForce() {
+        PrefixIndex index = PrefixIndex.build(buildStore(new Random(7), 500));
+        String[] queries = {"s", "sa", "san", "san ", "san j", "santa", "c", "co", "coeur d",
+                "coeurd", "coeur da", "new", "new y", "newa", "n", "nandu", "o fallon", "ofal",
+                "a", "zz", "sandyx"};
+        for(String query : queries){
+            PrefixIndex.Match match = index.search(query);
+            assertEquals(query, expectedStates(index, query), matchedStates(index, match));
+            assertEquals(query, expectedCities(index, query), matchedCities(index, match));
+        }
+    }
+
+    @Test
+    public void foldsTheQueryLikeTheNames() {
+        PrefixIndex index = PrefixIndex.build(buildStore(new Random(3), 200));
+        assertEquals(matchedCities(index, index.search("san jose")),
+                matchedCities(index, index.search("SAN JOSÉ")));
+        assertEquals(matchedCities(index, index.search("coeur d'a")),
+                matchedCities(index, index.search("COEUR DA")));
+        assertEquals(matchedStates(index, index.search("new y")),
+                matchedStates(index, index.search("NEW-Y")));
+    }
+
+    @Test
+    public void emptyQueryMatchesNothing() {
+        PrefixIndex index = PrefixIndex.build(buildStore(new Random(1), 50));
+        for(String query : new String[]{"", " ", "'-", "  ,. "}){
+            PrefixIndex.Match match = index.search(query);
+            assertEquals(0, match.getStateCount());
+            assertEquals(0, match.getCityCount());
+        }
+    }
+
+    @Test
+    public void queryLongerThanTheKeyBuffer() {
+        LocationStore.Builder builder = new LocationStore.Builder();
+        String longName = "Llanfairpwllgwyngyllgogerychwyrndrobwllllantysiliogogogoch";
+        builder.add("Wales", longName, 53.2, -4.2, 3107, 1, 0);
+        builder.add("Wales", "Llandudno", 53.3, -3.8, 20701, 2, 0);
+        PrefixIndex index = PrefixIndex.build(builder.build(null, new LocationCollator(Locale.US)));
+
+        assertEquals(1, index.search(longName).getCityCount());
+        assertEquals(0, index.search(longName + "x").getCityCount());
+        assertEquals(2, index.search("llan").getCityCount());
+    }
+
+    private static LocationStore buildStore(Random random, int count){
+        LocationStore.Builder builder = new LocationStore.Builder(count);
+        for(int i=0; i<count; i++){
+            String state = STATES[random.nextInt(STATES.length)];
+            String city = CITIES[random.nextInt(CITIES.length)];
+            if(random.nextBoolean()){
+                city += " " + i;
+            }
+            builder.add(state, city, 0, 0, i, i, 0);
+        }
+        return builder.build(null, new LocationCollator(Locale.US));
+    }
+
+    private static List<String> expectedStates(PrefixIndex index, String query){
+        String key = SearchKeys.fold(query);
+        List<String> names = new ArrayList<>();
+        for(String name : index.getStateNames()){
+            if(!key.isEmpty() && SearchKeys.fold(name).startsWith(key)){
+                names.add(name);
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private static List<String> matchedStates(PrefixIndex index, PrefixIndex.Match match){
+        List<String> names = new ArrayList<>();
+        for(int i=match.getStateStart(); i<match.getStateEnd(); i++){
+            names.add(index.getStateNames()[i]);
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private static List<Integer> expectedCities(PrefixIndex index, String query){
+        String key = SearchKeys.fold(query);
+        LocationStore store = index.getStore();
+        List<Integer> cities = new ArrayList<>();
+        for(int city=0; city<store.getCityCount(); city++){
+            if(!key.isEmpty() && SearchKeys.fold(store.getCityName(city)).startsWith(key)){
+                cities.add(city);
+            }
+        }
+        return cities;
+    }
+
+    private static List<Integer> matchedCities(PrefixIndex index, PrefixIndex.Match match){
+        List<Integer> cities = new ArrayList<>();
+        for(int i=match.getCityStart(); i<match.getCityEnd(); i++){
+            cities.add(index.getCities()[i]);
+        }
+        Collections.sort(cities);
+        return cities;
+    }
+}
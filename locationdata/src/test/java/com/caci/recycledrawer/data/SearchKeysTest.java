@@ -0,0 +1,62 @@
+package com.caci.recycledrawer.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SearchKeysTest {
+
+    /**
+     * U+20000 and U+20001, CJK letters outside the BMP
+     */
+    private static final String ASTRAL_1 = "𠀀";
+    private static final String ASTRAL_2 = "𠀁";
+
+    @Test
+    public void foldsCaseAndPunctuation() {
+        assertEquals("st louis", SearchKeys.fold("St. Louis"));
+        assertEquals("winston salem", SearchKeys.fold("Winston-Salem"));
+        assertEquals("new york", SearchKeys.fold("  New   York!  "));
+        assertEquals("", SearchKeys.fold("..."));
+    }
+
+    @Test
+    public void dropsApostrophes() {
+        assertEquals("coeur dalene", SearchKeys.fold("Coeur d'Alene"));
+        assertEquals("coeur dalene", SearchKeys.fold("Coeur d’Alene"));
+    }
+
+    @Test
+    public void stripsAccents() {
+        assertEquals("san jose", SearchKeys.fold("San José"));
+        assertEquals("canon city", SearchKeys.fold("Cañon City"));
+        // Already decomposed: e followed by a combining acute accent
+        assertEquals("san jose", SearchKeys.fold("San José"));
+    }
+
+    @Test
+    public void keepsLettersOutsideTheBmp() {
+        assertEquals(ASTRAL_1 + ASTRAL_2, SearchKeys.fold(ASTRAL_1 + ASTRAL_2));
+        assertEquals("ab" + ASTRAL_1 + "cd", SearchKeys.fold("Ab" + ASTRAL_1 + "cd"));
+        assertEquals("ab " + ASTRAL_1, SearchKeys.fold("Ab " + ASTRAL_1 + "."));
+    }
+
+    @Test
+    public void foldsNonBmpCase() {
+        // DESERET CAPITAL LETTER LONG I, U+10400, lower cases to U+10428
+        assertEquals("𐐨", SearchKeys.fold("𐐀"));
+    }
+
+    @Test
+    public void charArrayMatchesCharSequence() {
+        String[] names = {"St. Louis", "San José", "Ab" + ASTRAL_1 + "cd", "Coeur d'Alene",
+                "É " + ASTRAL_2, ""};
+        for(String name : names){
+            // Surrounded by other chars, to check only the name is read
+            char[] chars = ("xx" + name + "yy").toCharArray();
+            StringBuilder out = new StringBuilder("key:");
+            SearchKeys.fold(chars, 2, name.length(), out);
+            assertEquals("key:" + SearchKeys.fold(name), out.toString());
+        }
+    }
+}
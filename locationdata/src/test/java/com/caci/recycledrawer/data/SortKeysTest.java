@@ -0,0 +1,150 @@
+package com.caci.recycledrawer.data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SortKeysTest {
+
+    private static final Locale SWEDISH = new Locale("sv", "SE");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void buildSortsByCollationKeys() {
+        LocationStore store = buildStore().build(null, new LocationCollator(Locale.US));
+
+        String[] states = store.getStateNames();
+        String[] expected = states.clone();
+        new LocationCollator(Locale.US).sort(expected);
+        assertArrayEquals(expected, states);
+        assertCitiesSorted(store, Locale.US);
+        assertNotNull(store.getSortKeys("en_US"));
+        assertNull(store.getSortKeys("sv_SE"));
+    }
+
+    @Test
+    public void sortedCopyComparesStoredKeys() {
+        LocationStore english = buildStore().build(null, new LocationCollator(Locale.US));
+        CountingCollator swedish = new CountingCollator(SWEDISH);
+        LocationStore keyed = english.withSortKeys(swedish);
+        assertEquals(english.getStateCount() + english.getCityCount(), swedish.mKeys);
+        assertTrue(keyed.withSortKeys(swedish) == keyed);
+
+        swedish.mKeys = 0;
+        LocationStore sorted = keyed.sortedCopy(null, swedish);
+        assertEquals(0, swedish.mKeys);
+        assertSameOrder(buildStore().build(null, new LocationCollator(SWEDISH)), sorted);
+        assertCitiesSorted(sorted, SWEDISH);
+
+        // The copy keeps the keys of both locales, so sorting back doesn't build any either
+        CountingCollator us = new CountingCollator(Locale.US);
+        assertSameOrder(english, sorted.sortedCopy(null, us));
+        assertEquals(0, us.mKeys);
+    }
+
+    @Test
+    public void sortedCopyBuildsMissingKeysOnce() {
+        LocationStore english = buildStore().build(null, new LocationCollator(Locale.US));
+        CountingCollator swedish = new CountingCollator(SWEDISH);
+        LocationStore sorted = english.sortedCopy(null, swedish);
+        assertEquals(english.getStateCount() + english.getCityCount(), swedish.mKeys);
+
+        swedish.mKeys = 0;
+        assertSameOrder(sorted, sorted.sortedCopy(null, swedish));
+        assertEquals(0, swedish.mKeys);
+    }
+
+    @Test
+    public void keysAreStoredInTheIndexAndSnapshot() throws IOException {
+        LocationStore english = buildStore().build(null, new LocationCollator(Locale.US))
+                .withSortKeys(new LocationCollator(SWEDISH));
+        File indexFile = folder.newFile();
+        LocationIndex.write(english, 1, "en_US", indexFile);
+        LocationStore mapped = LocationIndex.map(indexFile).getStore();
+        assertNotNull(mapped.getSortKeys("en_US"));
+        assertNotNull(mapped.getSortKeys("sv_SE"));
+
+        CountingCollator swedish = new CountingCollator(SWEDISH);
+        LocationStore sorted = mapped.sortedCopy(null, swedish);
+        assertEquals(0, swedish.mKeys);
+
+        File snapshotFile = folder.newFile();
+        new LocationSnapshot(snapshotFile).write(sorted, 1, "sv_SE");
+        LocationStore read = new LocationSnapshot(snapshotFile).read(1, "sv_SE");
+        assertNotNull(read);
+        assertSameOrder(sorted, read);
+        CountingCollator us = new CountingCollator(Locale.US);
+        assertSameOrder(english, read.sortedCopy(null, us));
+        assertEquals(0, us.mKeys);
+    }
+
+    private static LocationStore.Builder buildStore(){
+        LocationStore.Builder builder = new LocationStore.Builder();
+        String[] states = {"Örebro län", "Zeeland", "Ohio", "Ångermanland", "Alaska"};
+        String[] cities = {"Östersund", "Zürich", "Oslo", "Åre", "Ärla", "Arvika", "Zug",
+                "Ørsta", "Aalborg", "ore", "Ore", "Öre"};
+        for(int i=0; i<60; i++){
+            builder.add(states[i % states.length], cities[(i * 7) % cities.length] + " " + (i % 4),
+                    0, 0, i, i, 0);
+        }
+        return builder;
+    }
+
+    private static void assertSameOrder(LocationStore expected, LocationStore actual){
+        assertArrayEquals(expected.getStateNames(), actual.getStateNames());
+        assertEquals(expected.getCityCount(), actual.getCityCount());
+        for(int city=0; city<expected.getCityCount(); city++){
+            assertEquals(expected.getStateId(city), actual.getStateId(city));
+            assertEquals(expected.getCityName(city), actual.getCityName(city));
+        }
+    }
+
+    private static void assertCitiesSorted(LocationStore store, Locale locale){
+        Collator collator = Collator.getInstance(locale);
+        for(int state=0; state<store.getStateCount(); state++){
+            LocationStore.CitySlice cities = store.getCities(state);
+            String[] names = new String[cities.size()];
+            for(int i=0; i<names.length; i++){
+                names[i] = cities.getName(i);
+            }
+            String[] sorted = names.clone();
+            Arrays.sort(sorted, collator);
+            for(int i=0; i<names.length; i++){
+                // Names with equal keys can come in either order
+                assertEquals(0, collator.compare(sorted[i], names[i]));
+            }
+        }
+    }
+
+    /**
+     * Counts the keys built, to tell a sort that compared stored keys from one that built them
+     */
+    private static class CountingCollator extends LocationCollator {
+
+        private int mKeys;
+
+        CountingCollator(Locale locale){
+            super(locale);
+        }
+
+        @Override
+        public byte[] getKeyBytes(String name) {
+            mKeys++;
+            return super.getKeyBytes(name);
+        }
+    }
+}
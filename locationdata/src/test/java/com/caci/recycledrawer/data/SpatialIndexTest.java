@@ -0,0 +1,131 @@
+package com.caci.recycledrawer.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpatialIndexTest {
+
+    private static final double TOLERANCE_KM = 1e-6;
+
+    @Test
+    public void nearestMatchesBruteForce() {
+        Random random = new Random(11);
+        LocationStore store = randomStore(random, 3000);
+        SpatialIndex index = SpatialIndex.build(store);
+        SpatialIndex.Result result = new SpatialIndex.Result(10);
+
+        for(int query=0; query<200; query++){
+            double latitude = randomLatitude(random);
+            double longitude = randomLongitude(random);
+            int count = 1 + random.nextInt(25);
+            index.nearest(latitude, longitude, count, result);
+
+            double[] expected = sortedDistances(store, latitude, longitude);
+            assertEquals(count, result.size());
+            for(int i=0; i<count; i++){
+                // Compared by distance, cities the same distance away can come in either order
+                assertEquals(expected[i], result.getDistanceKm(i), TOLERANCE_KM);
+                int city = result.getCity(i);
+                assertEquals(SpatialIndex.haversineKm(latitude, longitude,
+                        store.getLatitude(city), store.getLongitude(city)),
+                        result.getDistanceKm(i), TOLERANCE_KM);
+            }
+        }
+    }
+
+    @Test
+    public void nearestAcrossTheAntimeridian() {
+        LocationStore.Builder builder = new LocationStore.Builder();
+        builder.add("Pacific", "East", 0, 179.9, 1, 1, 0);
+        builder.add("Pacific", "West", 0, -179.9, 1, 2, 0);
+        builder.add("Pacific", "Far", 0, 170, 1, 3, 0);
+        LocationStore store = builder.build();
+        SpatialIndex.Result result = new SpatialIndex.Result(2);
+
+        SpatialIndex.build(store).nearest(0, -179.95, 2, result);
+        assertEquals(2, result.size());
+        assertEquals("West", store.getCityName(result.getCity(0)));
+        assertEquals("East", store.getCityName(result.getCity(1)));
+    }
+
+    @Test
+    public void nearestReturnsEveryCityWhenAskedForMore() {
+        Random random = new Random(3);
+        LocationStore store = randomStore(random, 7);
+        SpatialIndex.Result result = new SpatialIndex.Result(1);
+
+        SpatialIndex.build(store).nearest(10, 10, 50, result);
+        assertEquals(7, result.size());
+        for(int i=1; i<result.size(); i++){
+            assertTrue(result.getDistanceKm(i - 1) <= result.getDistanceKm(i));
+        }
+    }
+
+    @Test
+    public void withinMatchesBruteForce() {
+        Random random = new Random(5);
+        LocationStore store = randomStore(random, 3000);
+        SpatialIndex index = SpatialIndex.build(store);
+        SpatialIndex.Result result = new SpatialIndex.Result(4);
+
+        for(int query=0; query<100; query++){
+            double latitude = randomLatitude(random);
+            double longitude = randomLongitude(random);
+            double radiusKm = 50 + random.nextDouble() * 1500;
+            index.within(latitude, longitude, radiusKm, result);
+
+            double[] expected = sortedDistances(store, latitude, longitude);
+            int inside = 0;
+            while(inside < expected.length && expected[inside] <= radiusKm){
+                inside++;
+            }
+            assertEquals(inside, result.size());
+            for(int i=0; i<inside; i++){
+                assertEquals(expected[i], result.getDistanceKm(i), TOLERANCE_KM);
+            }
+        }
+    }
+
+    /**
+     * Cities spread over the whole globe, plus a cluster of close neighbours
+     */
+    private static LocationStore randomStore(Random random, int count){
+        LocationStore.Builder builder = new LocationStore.Builder(count);
+        for(int i=0; i<count; i++){
+            double latitude;
+            double longitude;
+            if(i % 3 == 0){
+                latitude = 40 + random.nextDouble();
+                longitude = -100 + random.nextDouble();
+            } else{
+                latitude = randomLatitude(random);
+                longitude = randomLongitude(random);
+            }
+            builder.add("State " + (i % 20), "City " + i, latitude, longitude, i, i, 0);
+        }
+        return builder.build();
+    }
+
+    private static double randomLatitude(Random random){
+        return random.nextDouble() * 180 - 90;
+    }
+
+    private static double randomLongitude(Random random){
+        return random.nextDouble() * 360 - 180;
+    }
+
+    private static double[] sortedDistances(LocationStore store, double latitude, double longitude){
+        double[] distances = new double[store.getCityCount()];
+        for(int city=0; city<distances.length; city++){
+            distances[city] = SpatialIndex.haversineKm(latitude, longitude,
+                    store.getLatitude(city), store.getLongitude(city));
+        }
+        Arrays.sort(distances);
+        return distances;
+    }
+}
@@ -0,0 +1,277 @@
+package com.caci.recycledrawer.data;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Writes json files in the same schema as assets/cities.json with made up cities, for testing
+ * and benchmarking at sizes the shipped file doesn't reach.  Everything is drawn from a seeded
+ * Random, so the same settings always write the same file.  What can be set:
+ *   - City count, and state count.  The first 51 states are the real ones, the rest are made up.
+ *     Cities are skewed towards the first states, so some states are much bigger than others
+ *   - Name lengths: fixed, uniform or long tailed between a min and max length in chars
+ *   - Unicode: the fraction of names made of accented Latin, Greek, Cyrillic, CJK and Hangul
+ *     syllables, some outside the BMP, instead of plain ASCII ones
+ * Rows are written as they're made up, so files of millions of cities need no memory.  Run main
+ * to write a file from the command line, see the generateCities task in build.gradle.
+ */
+public class SyntheticCities {
+
+    /**
+     * How name lengths are spread between the min and max length
+     */
+    public enum NameLength {
+        /** Every name is the max length */
+        FIXED,
+        /** Any length between min and max equally often */
+        UNIFORM,
+        /** Mostly short names with a few long ones, like real city names */
+        LONG_TAIL
+    }
+
+    private static final String[] ASCII_SYLLABLES = {"san", "ta", "ro", "mel", "ville", "ford",
+            "ton", "ber", "wood", "lake", "port", "field", "ash", "dale", "cor", "na", "west",
+            "burg", "mont", "view", "el", "ri", "do", "spring", "o'", "st.", "-"};
+    private static final String[] UNICODE_SYLLABLES = {"são", "zü", "rich", "ñe", "ço", "ø",
+            "å", "ß", "ł", "ő", "αθ", "ήνα", "мос", "ква", "київ", "東", "京", "大阪", "서울",
+            "부산", "𠀋", "𠮷", "é", "île", "çà"};
+    private static final String[] STATES = {"Alabama", "Alaska", "Arizona", "Arkansas",
+            "California", "Colorado", "Connecticut", "Delaware", "District of Columbia", "Florida",
+            "Georgia", "Hawaii", "Idaho", "Illinois", "Indiana", "Iowa", "Kansas", "Kentucky",
+            "Louisiana", "Maine", "Maryland", "Massachusetts", "Michigan", "Minnesota",
+            "Mississippi", "Missouri", "Montana", "Nebraska", "Nevada", "New Hampshire",
+            "New Jersey", "New Mexico", "New York", "North Carolina", "North Dakota", "Ohio",
+            "Oklahoma", "Oregon", "Pennsylvania", "Rhode Island", "South Carolina", "South Dakota",
+            "Tennessee", "Texas", "Utah", "Vermont", "Virginia", "Washington", "West Virginia",
+            "Wisconsin", "Wyoming"};
+
+    /**
+     * Settings, see the setters
+     */
+    private int mCityCount = 10000;
+    private int mStateCount = STATES.length;
+    private NameLength mNameLength = NameLength.LONG_TAIL;
+    private int mMinNameLength = 3;
+    private int mMaxNameLength = 40;
+    private double mUnicodeFraction;
+    private long mSeed = 0x5EEDC17EL;
+
+    /**
+     * Write the file, or reuse it if one with the same settings was already written to the dir
+     * @param dir directory to write to
+     * @return the json file
+     * @throws IOException if the file can't be written
+     */
+    public File write(File dir) throws IOException {
+        File file = new File(dir, getFileName());
+        if(file.exists()){
+            return file;
+        }
+        if(!dir.isDirectory() && !dir.mkdirs()){
+            throw new IOException("Unable to create " + dir);
+        }
+        File temp = new File(dir, file.getName() + ".tmp");
+        write(new FileOutputStream(temp));
+        if(!temp.renameTo(file)){
+            temp.delete();
+            throw new IOException("Unable to write " + file);
+        }
+        return file;
+    }
+
+    /**
+     * Write the json array
+     * @param stream stream to write to, closed when done
+     * @throws IOException if the stream can't be written
+     */
+    public void write(OutputStream stream) throws IOException {
+        Random random = new Random(mSeed);
+        String[] states = makeStateNames(random);
+        Writer out = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"), 64 * 1024);
+        try {
+            out.write("[\n");
+            for(int i=0; i<mCityCount; i++){
+                String state = states[(int) (states.length * Math.pow(random.nextDouble(), 2))];
+                int rank = i + 1;
+                // Rows are in rank order like cities.json, so population falls with rank
+                int population = Math.max(1000, (int) (9000000 / Math.pow(rank, 0.75)));
+                out.write("  {\n    \"city\": ");
+                writeString(out, makeName(random, nextNameLength(random)));
+                out.write(String.format(Locale.US, ",\n"
+                                + "    \"growth_from_2000_to_2013\": \"%.1f%%\",\n"
+                                + "    \"latitude\": %.7f,\n"
+                                + "    \"longitude\": %.7f,\n"
+                                + "    \"population\": \"%d\",\n"
+                                + "    \"rank\": \"%d\",\n"
+                                + "    \"state\": ",
+                        random.nextDouble() * 100 - 20, 25 + random.nextDouble() * 24,
+                        -124 + random.nextDouble() * 57, population, rank));
+                writeString(out, state);
+                out.write(i < mCityCount - 1 ? "\n  },\n" : "\n  }\n");
+            }
+            out.write("]\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Name of the file write(File) writes, made from the settings so different settings never
+     * share a file
+     * @return file name
+     */
+    public String getFileName(){
+        return String.format(Locale.US, "cities-%d-%d-%s-%d-%d-%d-%x.json", mCityCount,
+                mStateCount, mNameLength.name().toLowerCase(Locale.US), mMinNameLength,
+                mMaxNameLength, Math.round(mUnicodeFraction * 100), mSeed);
+    }
+
+    /**
+     * The real states, then made up ones until there are enough
+     */
+    private String[] makeStateNames(Random random){
+        String[] names = new String[mStateCount];
+        Set<String> used = new HashSet<>();
+        for(int i=0; i<mStateCount; i++){
+            String name = i < STATES.length ? STATES[i] : makeName(random, 6 + random.nextInt(12));
+            while(!used.add(name)){
+                name = name + " " + ASCII_SYLLABLES[random.nextInt(ASCII_SYLLABLES.length)];
+            }
+            names[i] = name;
+        }
+        return names;
+    }
+
+    private int nextNameLength(Random random){
+        int range = mMaxNameLength - mMinNameLength;
+        switch(mNameLength){
+            case FIXED:
+                return mMaxNameLength;
+            case UNIFORM:
+                return mMinNameLength + random.nextInt(range + 1);
+            default:
+                // Exponential, with 1 in 20 names longer than a third of the range
+                double length = -Math.log(1 - random.nextDouble()) * range / 9;
+                return mMinNameLength + (int) Math.min(length, range);
+        }
+    }
+
+    /**
+     * Make up a name of words of syllables, cut to the length in chars.  A surrogate pair cut in
+     * half, or a trailing space, becomes a letter
+     */
+    private String makeName(Random random, int length){
+        String[] syllables = random.nextDouble() < mUnicodeFraction ? UNICODE_SYLLABLES
+                : ASCII_SYLLABLES;
+        StringBuilder name = new StringBuilder(length + 8);
+        boolean wordStart = true;
+        while(name.length() < length){
+            if(!wordStart && random.nextInt(4) == 0){
+                name.append(' ');
+                wordStart = true;
+                continue;
+            }
+            String syllable = syllables[random.nextInt(syllables.length)];
+            if(wordStart){
+                syllable = syllable.substring(0, 1).toUpperCase(Locale.US) + syllable.substring(1);
+                wordStart = false;
+            }
+            name.append(syllable);
+        }
+        name.setLength(length);
+        char last = name.charAt(length - 1);
+        if(last == ' ' || Character.isHighSurrogate(last)){
+            name.setCharAt(length - 1, 'a');
+        }
+        return name.toString();
+    }
+
+    /**
+     * Write a json string, escaping what json requires
+     */
+    private static void writeString(Writer out, String value) throws IOException {
+        out.write('"');
+        for(int i=0; i<value.length(); i++){
+            char c = value.charAt(i);
+            if(c == '"' || c == '\\'){
+                out.write('\\');
+                out.write(c);
+            } else if(c < 0x20){
+                out.write(String.format(Locale.US, "\\u%04x", (int) c));
+            } else{
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * Setters
+     */
+    public void setCityCount(int cityCount) {
+        this.mCityCount = cityCount;
+    }
+
+    public void setStateCount(int stateCount) {
+        if(stateCount < 1){
+            throw new IllegalArgumentException("Need at least one state");
+        }
+        this.mStateCount = stateCount;
+    }
+
+    public void setNameLength(NameLength nameLength, int minLength, int maxLength) {
+        if(minLength < 1 || maxLength < minLength){
+            throw new IllegalArgumentException("Bad name lengths " + minLength + ".." + maxLength);
+        }
+        this.mNameLength = nameLength;
+        this.mMinNameLength = minLength;
+        this.mMaxNameLength = maxLength;
+    }
+
+    public void setUnicodeFraction(double unicodeFraction) {
+        this.mUnicodeFraction = unicodeFraction;
+    }
+
+    public void setSeed(long seed) {
+        this.mSeed = seed;
+    }
+
+    /**
+     * Write a file from the command line
+     * @param args output dir, city count, then optionally state count, name length
+     *             distribution, min and max name length, unicode fraction and seed
+     * @throws IOException if the file can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2){
+            System.err.println("Usage: SyntheticCities <dir> <cities> [states] "
+                    + "[fixed|uniform|long_tail] [min length] [max length] [unicode fraction] [seed]");
+            System.exit(1);
+        }
+        SyntheticCities cities = new SyntheticCities();
+        cities.setCityCount(Integer.parseInt(args[1]));
+        if(args.length > 2){
+            cities.setStateCount(Integer.parseInt(args[2]));
+        }
+        if(args.length > 5){
+            cities.setNameLength(NameLength.valueOf(args[3].toUpperCase(Locale.US)),
+                    Integer.parseInt(args[4]), Integer.parseInt(args[5]));
+        }
+        if(args.length > 6){
+            cities.setUnicodeFraction(Double.parseDouble(args[6]));
+        }
+        if(args.length > 7){
+            cities.setSeed(Long.parseLong(args[7]));
+        }
+        System.out.println(cities.write(new File(args[0])));
+    }
+}
@@ -0,0 +1,236 @@
+package com.caci.recycledrawer.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TrigramIndexTest {
+
+    private static final String[] NAMES = {"Houston", "Hueston", "Austin", "Boston",
+            "Philadelphia", "San José", "San Jose", "San Juan", "Santa Ana", "Springfield", "Springdale",
+            "Coeur d'Alene", "Kansas City", "Denver", "Dover", "Portland", "Westland", "Reno"};
+
+    @Test
+    public void findsNamesWithTypos() {
+        // Every name once, without the random misspellings that could be closer to a typo
+        LocationStore.Builder builder = new LocationStore.Builder();
+        for(int i=0; i<NAMES.length; i++){
+            builder.add("State", NAMES[i], 0, 0, 1000 + i, i, 0);
+        }
+        LocationStore store = builder.build(null, new LocationCollator(Locale.US));
+        TrigramIndex index = TrigramIndex.fromStore(store);
+        String[][] typos = {{"Houstn", "Houston"}, {"Philadelpia", "Philadelphia"},
+                {"Sna Jose", "San Jose"}, {"springfeild", "Springfield"},
+                {"coeur dalen", "Coeur d'Alene"}, {"Denvr", "Denver"}};
+        for(String[] typo : typos){
+            TrigramIndex.Matches matches = index.search(typo[0], TrigramIndex.DEFAULT_RESULTS);
+            assertTrue(typo[0], matches.size() > 0);
+            assertEquals(typo[0], SearchKeys.fold(typo[1]),
+                    SearchKeys.fold(store.getCityName(matches.getCity(0))));
+        }
+    }
+
+    @Test
+    public void topMatchesMatchBruteForce() {
+        Random random = new Random(9);
+        LocationStore store = buildStore(random, 2000);
+        TrigramIndex index = TrigramIndex.fromStore(store);
+        for(int query=0; query<300; query++){
+            String name = SearchKeys.fold(NAMES[random.nextInt(NAMES.length)]);
+            String typo = typo(random, name);
+            int maxResults = 1 + random.nextInt(30);
+
+            TrigramIndex.Matches matches = index.search(typo, maxResults);
+            List<Integer> expected = bruteForce(store, typo, maxResults);
+            assertEquals(typo, expected.size(), matches.size());
+            for(int i=0; i<matches.size(); i++){
+                assertEquals(typo, (int) expected.get(i), matches.getCity(i));
+            }
+        }
+    }
+
+    @Test
+    public void ordersByScoreThenPopulation() {
+        LocationStore.Builder builder = new LocationStore.Builder();
+        builder.add("Texas", "Houston", 0, 0, 2195914, 1, 0);
+        builder.add("Georgia", "Houston", 0, 0, 1000, 2, 0);
+        builder.add("Missouri", "Hueston", 0, 0, 5000000, 3, 0);
+        builder.add("Minnesota", "Houston", 0, 0, 900000, 4, 0);
+        LocationStore store = builder.build(null, new LocationCollator(Locale.US));
+        TrigramIndex.Matches matches = TrigramIndex.fromStore(store).search("houston", 10);
+
+        assertEquals(4, matches.size());
+        int[] populations = {2195914, 900000, 1000, 5000000};
+        for(int i=0; i<populations.length; i++){
+            assertEquals(populations[i], store.getPopulation(matches.getCity(i)));
+        }
+        assertEquals(1f, matches.getScore(0), 0);
+        assertEquals(0, matches.getDistance(2));
+        assertEquals(2, matches.getDistance(3));
+        assertTrue(matches.getScore(3) < matches.getScore(2));
+
+        // Only the best are kept
+        TrigramIndex.Matches best = TrigramIndex.fromStore(store).search("houston", 2);
+        assertEquals(2, best.size());
+        assertEquals(2195914, store.getPopulation(best.getCity(0)));
+        assertEquals(900000, store.getPopulation(best.getCity(1)));
+    }
+
+    @Test
+    public void shortQueriesOnlyReadThePostings() {
+        // Names of random letters, so any one trigram is in a small share of them
+        Random random = new Random(6);
+        LocationStore.Builder builder = new LocationStore.Builder(20000);
+        for(int i=0; i<20000; i++){
+            char[] name = new char[4 + random.nextInt(8)];
+            for(int j=0; j<name.length; j++){
+                name[j] = (char) ('a' + random.nextInt(26));
+            }
+            builder.add("State " + (i % 50), new String(name), 0, 0, i, i, 0);
+        }
+        LocationStore store = builder.build();
+        TrigramIndex index = TrigramIndex.fromStore(store);
+
+        for(String query : new String[]{"ab", "abc", "qwer", "zxcvb", "mnbvcx"}){
+            TrigramIndex.Matches matches = index.search(query, TrigramIndex.DEFAULT_RESULTS);
+            assertTrue(query, matches.getCandidateCount() > 0);
+            assertTrue(query + " read " + matches.getCandidateCount() + " candidates",
+                    matches.getCandidateCount() < store.getCityCount() / 20);
+        }
+    }
+
+    @Test
+    public void emptyQueryMatchesNothing() {
+        TrigramIndex index = TrigramIndex.fromStore(buildStore(new Random(4), 50));
+        assertEquals(0, index.search("", 10).size());
+        assertEquals(0, index.search(" '- ", 10).size());
+    }
+
+    private static LocationStore buildStore(Random random, int count){
+        LocationStore.Builder builder = new LocationStore.Builder(count);
+        for(int i=0; i<count; i++){
+            String name = NAMES[random.nextInt(NAMES.length)];
+            if(random.nextInt(4) == 0){
+                name = typo(random, name);
+            }
+            builder.add("State " + (i % 10), name, 0, 0, random.nextInt(100000), i, 0);
+        }
+        return builder.build(null, new LocationCollator(Locale.US));
+    }
+
+    /**
+     * Make up to two random edits to a name
+     */
+    private static String typo(Random random, String name){
+        StringBuilder typo = new StringBuilder(name);
+        int edits = random.nextInt(3);
+        for(int i=0; i<edits && typo.length() > 1; i++){
+            int at = random.nextInt(typo.length());
+            char c = (char) ('a' + random.nextInt(26));
+            switch(random.nextInt(3)){
+                case 0:
+                    typo.setCharAt(at, c);
+                    break;
+                case 1:
+                    typo.insert(at, c);
+                    break;
+                default:
+                    typo.deleteCharAt(at);
+                    break;
+            }
+        }
+        return typo.toString();
+    }
+
+    /**
+     * Every city within the search's edit limit that shares enough trigram buckets with the
+     * query to be a candidate, best first
+     */
+    private static List<Integer> bruteForce(final LocationStore store, String query,
+                                            int maxResults){
+        String key = SearchKeys.fold(query);
+        int maxEdits = key.length() <= 4 ? 1 : 2;
+        int[] queryGrams = grams(key);
+        int minShared = Math.max(1, queryGrams.length - 3 * maxEdits);
+        final List<Integer> cities = new ArrayList<>();
+        final List<Float> scores = new ArrayList<>();
+        for(int city=0; city<store.getCityCount(); city++){
+            String name = SearchKeys.fold(store.getCityName(city));
+            int distance = levenshtein(name, key);
+            if(distance <= maxEdits && shared(queryGrams, grams(name)) >= minShared){
+                cities.add(city);
+                scores.add(1f - (float) distance / Math.max(key.length(), name.length()));
+            }
+        }
+        final float[] cityScores = new float[store.getCityCount()];
+        for(int i=0; i<cities.size(); i++){
+            cityScores[cities.get(i)] = scores.get(i);
+        }
+        Collections.sort(cities, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                if(cityScores[a] != cityScores[b]){
+                    return cityScores[a] > cityScores[b] ? -1 : 1;
+                }
+                if(store.getPopulation(a) != store.getPopulation(b)){
+                    return store.getPopulation(a) > store.getPopulation(b) ? -1 : 1;
+                }
+                return a - b;
+            }
+        });
+        return cities.subList(0, Math.min(maxResults, cities.size()));
+    }
+
+    private static int[] grams(String key){
+        int[] grams = new int[key.length()];
+        return Arrays.copyOf(grams, TrigramIndex.grams(key.toCharArray(), 0, key.length(), grams));
+    }
+
+    /**
+     * Count the values two sorted, distinct arrays have in common
+     */
+    private static int shared(int[] a, int[] b){
+        int count = 0;
+        for(int i=0, j=0; i<a.length && j<b.length;){
+            if(a[i] == b[j]){
+                count++;
+                i++;
+                j++;
+            } else if(a[i] < b[j]){
+                i++;
+            } else{
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private static int levenshtein(String a, String b){
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for(int j=0; j<=b.length(); j++){
+            previous[j] = j;
+        }
+        for(int i=1; i<=a.length(); i++){
+            current[0] = i;
+            for(int j=1; j<=b.length(); j++){
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1),
+                        previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}